@@ -2,32 +2,63 @@ package com.internship.calculator;
 
 import java.util.Scanner;
 
+import com.internship.metrics.Counter;
+import com.internship.metrics.Metrics;
+import com.internship.metrics.Timer;
+
 /**
  * Calculator class provides basic arithmetic operations.
  */
 class Calculator {
 
+	private static final Timer ADDITION_TIMER = Metrics.timer("calculator_addition");
+	private static final Timer SUBTRACTION_TIMER = Metrics.timer("calculator_subtraction");
+	private static final Timer MULTIPLICATION_TIMER = Metrics.timer("calculator_multiplication");
+	private static final Timer DIVISION_TIMER = Metrics.timer("calculator_division");
+	private static final Counter DIVISION_BY_ZERO = Metrics.counter("calculator_division_by_zero");
+
 	/** Returns the sum of two numbers */
 	public double addition(double n1, double n2) {
-		return n1 + n2;
+		Timer.Sample sample = ADDITION_TIMER.start();
+		try {
+			return n1 + n2;
+		} finally {
+			ADDITION_TIMER.stop(sample);
+		}
 	}
 
 	/** Returns the difference between two numbers */
 	public double subtraction(double n1, double n2) {
-		return n1 - n2;
+		Timer.Sample sample = SUBTRACTION_TIMER.start();
+		try {
+			return n1 - n2;
+		} finally {
+			SUBTRACTION_TIMER.stop(sample);
+		}
 	}
 
 	/** Returns the product of two numbers */
 	public double multiplication(double n1, double n2) {
-		return n1 * n2;
+		Timer.Sample sample = MULTIPLICATION_TIMER.start();
+		try {
+			return n1 * n2;
+		} finally {
+			MULTIPLICATION_TIMER.stop(sample);
+		}
 	}
 
 	/** Returns the division of two numbers; throws exception if dividing by zero */
 	public double division(double n1, double n2) {
-		if (n2 == 0) {
-			throw new ArithmeticException("Division by zero is not allowed.");
+		Timer.Sample sample = DIVISION_TIMER.start();
+		try {
+			if (n2 == 0) {
+				DIVISION_BY_ZERO.increment();
+				throw new ArithmeticException("Division by zero is not allowed.");
+			}
+			return n1 / n2;
+		} finally {
+			DIVISION_TIMER.stop(sample);
 		}
-		return n1 / n2;
 	}
 }
 
@@ -5,4 +5,5 @@
  * 
  */
 module Assignment {
+	requires Metrics;
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.internship.employee;
+
+/**
+ * Represents an Employee with ID, name, and salary.
+ */
+class Employee {
+	private int id;
+	private String name;
+	private double salary;
+	private boolean active; // For soft delete
+
+	public Employee(int id, String name, double salary) {
+		this.id = id;
+		this.name = name;
+		this.salary = salary;
+		this.active = true;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public double getSalary() {
+		return salary;
+	}
+
+	public void setSalary(double salary) {
+		this.salary = salary;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public void deactivate() {
+		this.active = false;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Employee [ID=%d, Name=%s, Salary=%.2f]", id, name, salary);
+	}
+}
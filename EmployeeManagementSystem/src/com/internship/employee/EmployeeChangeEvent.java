@@ -0,0 +1,17 @@
+package com.internship.employee;
+
+/**
+ * Published on {@link EmployeeManagement#changeEvents()} after an employee is
+ * added, updated or deleted.
+ *
+ * @param type   Kind of change
+ * @param id     Employee ID
+ * @param name   Name after the change
+ * @param salary Salary after the change
+ */
+public record EmployeeChangeEvent(Type type, int id, String name, double salary) {
+
+	public enum Type {
+		ADDED, UPDATED, DELETED
+	}
+}
@@ -0,0 +1,67 @@
+package com.internship.employee;
+
+import java.util.List;
+
+/**
+ * An operation on an {@link EmployeeStore}, independent of the console so it
+ * can be scripted, generated and replayed.
+ */
+sealed interface EmployeeCommand {
+
+	/**
+	 * Outcome of a command
+	 *
+	 * @param success   Whether the command took effect (or found something)
+	 * @param employees Employees returned by find/list commands
+	 */
+	record Result(boolean success, List<Employee> employees) {
+
+		static Result of(boolean success) {
+			return new Result(success, List.of());
+		}
+	}
+
+	/** Run the command against a store */
+	Result execute(EmployeeStore store);
+
+	/** Add a new employee */
+	record Add(int id, String name, double salary) implements EmployeeCommand {
+		@Override
+		public Result execute(EmployeeStore store) {
+			return Result.of(store.add(new Employee(id, name, salary)));
+		}
+	}
+
+	/** Update an employee's name and salary */
+	record Update(int id, String name, double salary) implements EmployeeCommand {
+		@Override
+		public Result execute(EmployeeStore store) {
+			return Result.of(store.update(id, name, salary));
+		}
+	}
+
+	/** Soft delete an employee */
+	record Delete(int id) implements EmployeeCommand {
+		@Override
+		public Result execute(EmployeeStore store) {
+			return Result.of(store.delete(id));
+		}
+	}
+
+	/** Find an employee by ID */
+	record Find(int id) implements EmployeeCommand {
+		@Override
+		public Result execute(EmployeeStore store) {
+			Employee emp = store.find(id);
+			return emp == null ? Result.of(false) : new Result(true, List.of(emp));
+		}
+	}
+
+	/** List all active employees */
+	record ListAll() implements EmployeeCommand {
+		@Override
+		public Result execute(EmployeeStore store) {
+			return new Result(true, store.list());
+		}
+	}
+}
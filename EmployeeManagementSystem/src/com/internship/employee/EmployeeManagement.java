@@ -1,65 +1,40 @@
 package com.internship.employee;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
+import com.internship.events.EventBus;
+import com.internship.metrics.Metrics;
+import com.internship.metrics.Timer;
+
 /**
- * Represents an Employee with ID, name, and salary.
+ * Main class for Employee Management System. Provides CRUD operations on
+ * employees with input validation and soft delete support. Operations run as
+ * {@link EmployeeCommand}s against an {@link EmployeeStore}; the backend is
+ * chosen with {@code -Demployee.store=list|map} (default list). Every change is
+ * published as an {@link EmployeeChangeEvent}.
  */
-class Employee {
-	private int id;
-	private String name;
-	private double salary;
-	private boolean active; // For soft delete
-
-	public Employee(int id, String name, double salary) {
-		this.id = id;
-		this.name = name;
-		this.salary = salary;
-		this.active = true;
-	}
-
-	public int getId() {
-		return id;
-	}
-
-	public String getName() {
-		return name;
-	}
-
-	public void setName(String name) {
-		this.name = name;
-	}
+public class EmployeeManagement {
+	private static final EmployeeStore store = EmployeeStore.create(System.getProperty("employee.store", "list"));
+	private static final Scanner scanner = new Scanner(System.in);
 
-	public double getSalary() {
-		return salary;
-	}
+	private static final Timer FIND_TIMER = Metrics.timer("employee_find_by_id");
 
-	public void setSalary(double salary) {
-		this.salary = salary;
-	}
+	/** Slots in the change event ring buffer */
+	private static final int EVENT_BUFFER_SIZE = 1024;
 
-	public boolean isActive() {
-		return active;
-	}
+	private static final EventBus<EmployeeChangeEvent> changeEvents = new EventBus<>(EVENT_BUFFER_SIZE);
 
-	public void deactivate() {
-		this.active = false;
+	private EmployeeManagement() {
 	}
 
-	@Override
-	public String toString() {
-		return String.format("Employee [ID=%d, Name=%s, Salary=%.2f]", id, name, salary);
+	/**
+	 * Change events for downstream subscribers such as payroll or caches. Events
+	 * are published by the menu thread only, after the change is applied.
+	 */
+	public static EventBus<EmployeeChangeEvent> changeEvents() {
+		return changeEvents;
 	}
-}
-
-/**
- * Main class for Employee Management System. Provides CRUD operations on
- * employees with input validation and soft delete support.
- */
-public class EmployeeManagement {
-	private static final ArrayList<Employee> employeeList = new ArrayList<>();
-	private static final Scanner scanner = new Scanner(System.in);
 
 	public static void main(String[] args) {
 		int choice;
@@ -76,6 +51,7 @@ public class EmployeeManagement {
 			}
 		} while (choice != 5);
 
+		changeEvents.close();
 		scanner.close();
 	}
 
@@ -94,7 +70,7 @@ public class EmployeeManagement {
 		int id;
 		while (true) {
 			id = getValidInt("Enter employee ID: ", 1, Integer.MAX_VALUE);
-			if (findEmployeeById(id) != null && findEmployeeById(id).isActive()) {
+			if (findEmployeeById(id) != null) {
 				System.out.println("Employee with ID " + id + " already exists.");
 			} else
 				break;
@@ -102,55 +78,56 @@ public class EmployeeManagement {
 
 		String name = getValidName("Enter employee name: ");
 		double salary = getValidSalary("Enter employee salary: ");
-		employeeList.add(new Employee(id, name, salary));
-		System.out.println("Employee added successfully.");
+		if (new EmployeeCommand.Add(id, name, salary).execute(store).success()) {
+			changeEvents.publish(new EmployeeChangeEvent(EmployeeChangeEvent.Type.ADDED, id, name, salary));
+			System.out.println("Employee added successfully.");
+		} else
+			System.out.println("Employee with ID " + id + " already exists.");
 	}
 
 	/** View all active employees */
 	private static void viewEmployees() {
-		boolean found = false;
+		List<Employee> employees = new EmployeeCommand.ListAll().execute(store).employees();
 		System.out.println("\n---- Employee List ----");
-		for (Employee emp : employeeList) {
-			if (emp.isActive()) {
-				System.out.println(emp);
-				found = true;
-			}
+		for (Employee emp : employees) {
+			System.out.println(emp);
 		}
-		if (!found)
+		if (employees.isEmpty())
 			System.out.println("No employees found.");
 	}
 
 	/** Update an employee's name and salary */
 	private static void updateEmployee() {
-		if (employeeList.isEmpty()) {
+		if (store.isEmpty()) {
 			System.out.println("No employees to update.");
 			return;
 		}
 
 		int id = getValidInt("Enter employee ID to update: ", 1, Integer.MAX_VALUE);
-		Employee emp = findEmployeeById(id);
-		if (emp == null || !emp.isActive()) {
+		if (findEmployeeById(id) == null) {
 			System.out.println("Employee not found.");
 			return;
 		}
 
 		String newName = getValidName("Enter new name: ");
 		double newSalary = getValidSalary("Enter new salary: ");
-		emp.setName(newName);
-		emp.setSalary(newSalary);
-		System.out.println("Employee updated successfully.");
+		if (new EmployeeCommand.Update(id, newName, newSalary).execute(store).success()) {
+			changeEvents.publish(new EmployeeChangeEvent(EmployeeChangeEvent.Type.UPDATED, id, newName, newSalary));
+			System.out.println("Employee updated successfully.");
+		} else
+			System.out.println("Employee not found.");
 	}
 
 	/** Soft delete an employee (mark inactive) with confirmation */
 	private static void deleteEmployee() {
-		if (employeeList.isEmpty()) {
+		if (store.isEmpty()) {
 			System.out.println("No employees to delete.");
 			return;
 		}
 
 		int id = getValidInt("Enter employee ID to delete: ", 1, Integer.MAX_VALUE);
 		Employee emp = findEmployeeById(id);
-		if (emp == null || !emp.isActive()) {
+		if (emp == null) {
 			System.out.println("Employee not found.");
 			return;
 		}
@@ -158,20 +135,25 @@ public class EmployeeManagement {
 		System.out.print("Are you sure you want to delete this employee? (y/n): ");
 		String confirm = scanner.nextLine().trim().toLowerCase();
 		if (confirm.equals("y")) {
-			emp.deactivate(); // soft delete
+			if (new EmployeeCommand.Delete(id).execute(store).success()) { // soft delete
+				changeEvents.publish(new EmployeeChangeEvent(EmployeeChangeEvent.Type.DELETED, id, emp.getName(),
+						emp.getSalary()));
+			}
 			System.out.println("Employee deleted successfully.");
 		} else {
 			System.out.println("Deletion cancelled.");
 		}
 	}
 
-	/** Find an employee by ID */
+	/** Find an active employee by ID */
 	private static Employee findEmployeeById(int id) {
-		for (Employee emp : employeeList) {
-			if (emp.getId() == id)
-				return emp;
+		Timer.Sample sample = FIND_TIMER.start();
+		try {
+			List<Employee> found = new EmployeeCommand.Find(id).execute(store).employees();
+			return found.isEmpty() ? null : found.get(0);
+		} finally {
+			FIND_TIMER.stop(sample);
 		}
-		return null;
 	}
 
 	/** Validate integer input within a range */
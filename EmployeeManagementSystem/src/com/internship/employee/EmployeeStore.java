@@ -0,0 +1,42 @@
+package com.internship.employee;
+
+import java.util.List;
+
+/**
+ * Storage backend for employees. Implementations are safe for use by several
+ * threads. Deleted employees are soft deleted and no longer returned.
+ */
+interface EmployeeStore {
+
+	/**
+	 * Create a store by name
+	 *
+	 * @param type "list" (linear scan over an ArrayList) or "map" (hash index)
+	 * @return new empty store
+	 */
+	static EmployeeStore create(String type) {
+		return switch (type) {
+		case "list" -> new ListEmployeeStore();
+		case "map" -> new MapEmployeeStore();
+		default -> throw new IllegalArgumentException("Unknown employee store: " + type);
+		};
+	}
+
+	/** Add an employee; returns false if an active employee already has the ID */
+	boolean add(Employee employee);
+
+	/** Find an active employee by ID, or null */
+	Employee find(int id);
+
+	/** Update an active employee; returns false if not found */
+	boolean update(int id, String name, double salary);
+
+	/** Soft delete an active employee; returns false if not found */
+	boolean delete(int id);
+
+	/** All active employees */
+	List<Employee> list();
+
+	/** Whether the store has never held an employee */
+	boolean isEmpty();
+}
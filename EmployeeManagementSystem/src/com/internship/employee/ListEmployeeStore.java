@@ -0,0 +1,64 @@
+package com.internship.employee;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Employee store backed by an ArrayList with linear lookups. Every operation
+ * holds the store's lock.
+ */
+class ListEmployeeStore implements EmployeeStore {
+
+	private final ArrayList<Employee> employeeList = new ArrayList<>();
+
+	@Override
+	public synchronized boolean add(Employee employee) {
+		if (find(employee.getId()) != null)
+			return false;
+		employeeList.add(employee);
+		return true;
+	}
+
+	@Override
+	public synchronized Employee find(int id) {
+		for (Employee emp : employeeList) {
+			if (emp.getId() == id && emp.isActive())
+				return emp;
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized boolean update(int id, String name, double salary) {
+		Employee emp = find(id);
+		if (emp == null)
+			return false;
+		emp.setName(name);
+		emp.setSalary(salary);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean delete(int id) {
+		Employee emp = find(id);
+		if (emp == null)
+			return false;
+		emp.deactivate();
+		return true;
+	}
+
+	@Override
+	public synchronized List<Employee> list() {
+		List<Employee> active = new ArrayList<>();
+		for (Employee emp : employeeList) {
+			if (emp.isActive())
+				active.add(emp);
+		}
+		return active;
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return employeeList.isEmpty();
+	}
+}
@@ -0,0 +1,74 @@
+package com.internship.employee;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Employee store backed by a concurrent hash map keyed by ID. Updates replace
+ * the stored Employee so readers never see a half-applied change.
+ */
+class MapEmployeeStore implements EmployeeStore {
+
+	private final ConcurrentHashMap<Integer, Employee> employees = new ConcurrentHashMap<>();
+
+	@Override
+	public boolean add(Employee employee) {
+		boolean[] added = { false };
+		employees.compute(employee.getId(), (id, existing) -> {
+			if (existing != null && existing.isActive())
+				return existing;
+			added[0] = true;
+			return employee;
+		});
+		return added[0];
+	}
+
+	@Override
+	public Employee find(int id) {
+		Employee emp = employees.get(id);
+		return emp != null && emp.isActive() ? emp : null;
+	}
+
+	@Override
+	public boolean update(int id, String name, double salary) {
+		boolean[] updated = { false };
+		employees.computeIfPresent(id, (key, emp) -> {
+			if (!emp.isActive())
+				return emp;
+			updated[0] = true;
+			return new Employee(id, name, salary);
+		});
+		return updated[0];
+	}
+
+	@Override
+	public boolean delete(int id) {
+		boolean[] deleted = { false };
+		employees.computeIfPresent(id, (key, emp) -> {
+			if (emp.isActive()) {
+				Employee inactive = new Employee(id, emp.getName(), emp.getSalary());
+				inactive.deactivate();
+				deleted[0] = true;
+				return inactive;
+			}
+			return emp;
+		});
+		return deleted[0];
+	}
+
+	@Override
+	public List<Employee> list() {
+		List<Employee> active = new ArrayList<>();
+		for (Employee emp : employees.values()) {
+			if (emp.isActive())
+				active.add(emp);
+		}
+		return active;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return employees.isEmpty();
+	}
+}
@@ -0,0 +1,107 @@
+package com.internship.employee;
+
+import java.util.List;
+
+import com.internship.metrics.LatencyHistogram;
+
+/**
+ * Replay Runner
+ *
+ * Load test for the employee stores. A deterministic workload is generated once
+ * and replayed against every storage backend at several thread counts. Each
+ * thread replays every n-th command, so the same commands run in every
+ * configuration. Each backend first replays the workload once unmeasured, so
+ * the JIT has compiled it before the first measured run. Reports throughput and
+ * latency percentiles per run.
+ *
+ * Usage: ReplayRunner [commands] [employees] [uniform|zipf] [read|write]
+ */
+public class ReplayRunner {
+
+	private static final String[] BACKENDS = { "list", "map" };
+	private static final int[] THREAD_COUNTS = { 1, 2, 4, 8 };
+	private static final long SEED = 42;
+
+	private ReplayRunner() {
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int commandCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int employees = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+		WorkloadGenerator.KeyDistribution distribution = args.length > 2
+				? WorkloadGenerator.KeyDistribution.valueOf(args[2].toUpperCase())
+				: WorkloadGenerator.KeyDistribution.ZIPF;
+		WorkloadGenerator.Mix mix = args.length > 3 && args[3].equalsIgnoreCase("write")
+				? WorkloadGenerator.Mix.WRITE_HEAVY
+				: WorkloadGenerator.Mix.READ_HEAVY;
+
+		WorkloadGenerator generator = new WorkloadGenerator(SEED, mix, employees, distribution);
+		List<EmployeeCommand> preload = generator.preload();
+		List<EmployeeCommand> workload = generator.generate(commandCount);
+
+		System.out.printf("commands=%d employees=%d distribution=%s mix=%s%n", commandCount, employees, distribution,
+				mix);
+		System.out.printf("%-6s %7s %14s %10s %10s %10s %10s%n", "store", "threads", "ops/s", "p50(us)", "p99(us)",
+				"p99.9(us)", "max(us)");
+		for (String backend : BACKENDS) {
+			replay(preloaded(backend, preload), workload, 1, new LatencyHistogram());
+			for (int threads : THREAD_COUNTS) {
+				run(backend, preloaded(backend, preload), workload, threads);
+			}
+		}
+	}
+
+	/** A fresh store of a backend with the preload commands applied */
+	private static EmployeeStore preloaded(String backend, List<EmployeeCommand> preload) {
+		EmployeeStore store = EmployeeStore.create(backend);
+		for (EmployeeCommand command : preload) {
+			command.execute(store);
+		}
+		return store;
+	}
+
+	/** Replay the workload on a store with a number of threads and print the results */
+	private static void run(String backend, EmployeeStore store, List<EmployeeCommand> workload, int threads)
+			throws InterruptedException {
+		LatencyHistogram latency = new LatencyHistogram();
+		long began = System.nanoTime();
+		replay(store, workload, threads, latency);
+		double seconds = (System.nanoTime() - began) / 1e9;
+
+		System.out.printf("%-6s %7d %14.0f %10.1f %10.1f %10.1f %10.1f%n", backend, threads,
+				latency.getCount() / seconds, latency.getValueAtPercentile(50) / 1e3,
+				latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3,
+				latency.getMax() / 1e3);
+	}
+
+	/**
+	 * Replay the workload with a number of threads. Each thread records into its
+	 * own histogram, so threads do not contend on its counters; the histograms are
+	 * added to the given one afterwards.
+	 */
+	private static void replay(EmployeeStore store, List<EmployeeCommand> workload, int threads,
+			LatencyHistogram latency) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		LatencyHistogram[] perThread = new LatencyHistogram[threads];
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			LatencyHistogram own = perThread[t] = new LatencyHistogram();
+			workers[t] = new Thread(() -> {
+				for (int i = offset; i < workload.size(); i += threads) {
+					long start = System.nanoTime();
+					workload.get(i).execute(store);
+					own.record(System.nanoTime() - start);
+				}
+			});
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		for (LatencyHistogram own : perThread) {
+			latency.add(own);
+		}
+	}
+}
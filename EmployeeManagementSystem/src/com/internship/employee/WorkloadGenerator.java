@@ -0,0 +1,124 @@
+package com.internship.employee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a deterministic sequence of employee commands. The same seed and
+ * settings always produce the same workload, so runs against different
+ * backends and thread counts replay identical commands.
+ */
+class WorkloadGenerator {
+
+	/** How employee IDs are picked */
+	enum KeyDistribution {
+		/** Every ID is equally likely */
+		UNIFORM,
+		/** A few IDs are hot; ID rank r is picked with probability ~ 1 / r^s */
+		ZIPF
+	}
+
+	/**
+	 * Share of each command type in percent; must add up to 100
+	 */
+	record Mix(int add, int update, int delete, int find, int list) {
+		Mix {
+			if (add + update + delete + find + list != 100)
+				throw new IllegalArgumentException("Command mix must add up to 100");
+		}
+
+		/** Read-mostly mix: 90% finds */
+		static final Mix READ_HEAVY = new Mix(3, 5, 1, 90, 1);
+		/** Write-heavy mix: half the commands change data */
+		static final Mix WRITE_HEAVY = new Mix(15, 30, 5, 49, 1);
+	}
+
+	private static final double ZIPF_EXPONENT = 0.99;
+
+	private final SplittableRandom random;
+	private final Mix mix;
+	private final int keyCount;
+	private final double[] zipfCdf;
+
+	/**
+	 * @param seed         Random seed
+	 * @param mix          Command mix
+	 * @param keyCount     Number of distinct employee IDs (1..keyCount)
+	 * @param distribution Key distribution
+	 */
+	WorkloadGenerator(long seed, Mix mix, int keyCount, KeyDistribution distribution) {
+		this.random = new SplittableRandom(seed);
+		this.mix = mix;
+		this.keyCount = keyCount;
+		this.zipfCdf = distribution == KeyDistribution.ZIPF ? zipfCdf(keyCount, ZIPF_EXPONENT) : null;
+	}
+
+	/** Commands that add every employee ID once, used to preload a store */
+	List<EmployeeCommand> preload() {
+		List<EmployeeCommand> commands = new ArrayList<>(keyCount);
+		for (int id = 1; id <= keyCount; id++) {
+			commands.add(new EmployeeCommand.Add(id, nameFor(id), salary()));
+		}
+		return commands;
+	}
+
+	/** Generate the next {@code count} commands */
+	List<EmployeeCommand> generate(int count) {
+		List<EmployeeCommand> commands = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			commands.add(next());
+		}
+		return commands;
+	}
+
+	private EmployeeCommand next() {
+		int roll = random.nextInt(100);
+		int id = nextKey();
+		if ((roll -= mix.add()) < 0)
+			return new EmployeeCommand.Add(id, nameFor(id), salary());
+		if ((roll -= mix.update()) < 0)
+			return new EmployeeCommand.Update(id, nameFor(id), salary());
+		if ((roll -= mix.delete()) < 0)
+			return new EmployeeCommand.Delete(id);
+		if (roll - mix.find() < 0)
+			return new EmployeeCommand.Find(id);
+		return new EmployeeCommand.ListAll();
+	}
+
+	private int nextKey() {
+		if (zipfCdf == null)
+			return 1 + random.nextInt(keyCount);
+		int index = Arrays.binarySearch(zipfCdf, random.nextDouble());
+		return 1 + (index >= 0 ? index : Math.min(-index - 1, keyCount - 1));
+	}
+
+	private double salary() {
+		return 1 + random.nextInt(1_000_000);
+	}
+
+	/** Letters-only name derived from the ID, matching the console's validation */
+	private static String nameFor(int id) {
+		StringBuilder name = new StringBuilder("Employee ");
+		do {
+			name.append((char) ('a' + id % 26));
+			id /= 26;
+		} while (id > 0);
+		return name.toString();
+	}
+
+	/** Cumulative Zipf probabilities for ranks 1..n */
+	private static double[] zipfCdf(int n, double exponent) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int rank = 1; rank <= n; rank++) {
+			sum += 1 / Math.pow(rank, exponent);
+			cdf[rank - 1] = sum;
+		}
+		for (int i = 0; i < n; i++) {
+			cdf[i] /= sum;
+		}
+		return cdf;
+	}
+}
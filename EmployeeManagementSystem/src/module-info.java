@@ -5,4 +5,8 @@
  * 
  */
 module EmployeeManagementSystem {
+	requires Metrics;
+	requires transitive EventBus;
+
+	exports com.internship.employee;
 }
\ No newline at end of file
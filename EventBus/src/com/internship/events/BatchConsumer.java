@@ -0,0 +1,14 @@
+package com.internship.events;
+
+import java.util.List;
+
+/**
+ * Receives events in batches, in publication order. A batch holds every event
+ * that was published since the previous batch, up to the subscription's batch
+ * limit. The list is reused between calls and must not be kept.
+ */
+@FunctionalInterface
+public interface BatchConsumer<E> {
+
+	void onEvents(List<E> batch);
+}
@@ -0,0 +1,240 @@
+package com.internship.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event Bus
+ *
+ * Lock-free ring buffer with one writer and any number of readers. The writer
+ * stores an event in the next slot and then advances the published cursor;
+ * each subscriber runs on its own thread, follows the cursor with its own
+ * sequence and hands everything it has not seen yet to its consumer as one
+ * batch. No locks are taken on either side. A subscriber with nothing to read
+ * spins and yields briefly and then parks until the writer publishes again, so
+ * idle subscribers use no CPU.
+ *
+ * The writer never overtakes the slowest subscriber: when the buffer is full,
+ * {@link #publish(Object)} waits (back-pressure) and {@link #tryPublish(Object)}
+ * returns false.
+ *
+ * Only one thread may publish at a time.
+ */
+public class EventBus<E> implements AutoCloseable {
+
+	private static final int SPIN_TRIES = 100;
+
+	/** Tries a subscriber yields after spinning, before it parks */
+	private static final int YIELD_TRIES = 100;
+
+	/** First and longest pause of a publisher waiting for a full buffer to drain */
+	private static final long MIN_PARK_NANOS = 50_000;
+	private static final long MAX_PARK_NANOS = 1_000_000;
+
+	private final Object[] slots;
+	private final int mask;
+
+	/** Sequence of the last published event */
+	private final AtomicLong cursor = new AtomicLong(-1);
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	/** Writer-only cache of the slowest subscriber's sequence */
+	private long cachedGatingSequence = -1;
+
+	private volatile boolean closed;
+
+	/**
+	 * @param capacity Number of slots; rounded up to a power of two
+	 */
+	public EventBus(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		this.slots = new Object[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Publish an event, waiting while the slowest subscriber is a full buffer
+	 * behind
+	 *
+	 * @param event Event to publish
+	 */
+	public void publish(E event) {
+		long next = cursor.get() + 1;
+		int idle = 0;
+		while (!hasCapacity(next)) {
+			if (closed)
+				throw new IllegalStateException("Event bus is closed");
+			idle = idle(idle);
+		}
+		store(next, event);
+	}
+
+	/**
+	 * Publish an event unless the buffer is full
+	 *
+	 * @param event Event to publish
+	 * @return false if the slowest subscriber is a full buffer behind
+	 */
+	public boolean tryPublish(E event) {
+		long next = cursor.get() + 1;
+		if (!hasCapacity(next))
+			return false;
+		store(next, event);
+		return true;
+	}
+
+	private boolean hasCapacity(long next) {
+		long wrapPoint = next - slots.length;
+		if (wrapPoint <= cachedGatingSequence)
+			return true;
+		cachedGatingSequence = minimumSequence(next - 1);
+		return wrapPoint <= cachedGatingSequence;
+	}
+
+	private void store(long sequence, E event) {
+		slots[(int) (sequence & mask)] = event;
+		cursor.set(sequence);
+		for (Subscription subscription : subscriptions) {
+			if (subscription.parked)
+				LockSupport.unpark(subscription.thread);
+		}
+	}
+
+	private long minimumSequence(long fallback) {
+		long min = fallback;
+		for (Subscription subscription : subscriptions) {
+			min = Math.min(min, subscription.sequence.get());
+		}
+		return min;
+	}
+
+	/**
+	 * Start a subscriber thread that receives every event published from now on.
+	 * May be called from any thread, also while events are being published.
+	 *
+	 * @param name     Thread name
+	 * @param maxBatch Largest batch handed to the consumer at once
+	 * @param consumer Receives the batches
+	 * @return subscription handle
+	 */
+	public Subscription subscribe(String name, int maxBatch, BatchConsumer<E> consumer) {
+		Subscription subscription = new Subscription(name, maxBatch, consumer);
+		subscriptions.add(subscription);
+		// The writer may have checked capacity without this subscription, but only
+		// up to a cursor it had already published; start after that cursor
+		subscription.sequence.set(cursor.get());
+		subscription.thread.start();
+		return subscription;
+	}
+
+	/** Sequence of the last published event, or -1 if none */
+	public long getCursor() {
+		return cursor.get();
+	}
+
+	/**
+	 * Stop all subscribers after they have consumed everything published so far
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Subscription subscription : subscriptions) {
+			subscription.close();
+		}
+	}
+
+	/** Spin, then park for a pause that doubles with every try */
+	private static int idle(int tries) {
+		if (tries < SPIN_TRIES)
+			Thread.onSpinWait();
+		else
+			LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << Math.min(tries - SPIN_TRIES, 20), MAX_PARK_NANOS));
+		return tries + 1;
+	}
+
+	/**
+	 * A subscriber thread and its position in the buffer
+	 */
+	public class Subscription implements AutoCloseable {
+
+		/** Sequence of the last event handed to the consumer */
+		private final AtomicLong sequence;
+		private final int maxBatch;
+		private final BatchConsumer<E> consumer;
+		private final Thread thread;
+		private volatile boolean running = true;
+
+		/** Set while the thread is parked waiting for the writer */
+		private volatile boolean parked;
+
+		private Subscription(String name, int maxBatch, BatchConsumer<E> consumer) {
+			this.sequence = new AtomicLong(cursor.get());
+			this.maxBatch = maxBatch;
+			this.consumer = consumer;
+			this.thread = new Thread(this::run, name);
+			this.thread.setDaemon(true);
+		}
+
+		@SuppressWarnings("unchecked")
+		private void run() {
+			List<E> batch = new ArrayList<>(maxBatch);
+			int idle = 0;
+			while (true) {
+				long seen = sequence.get();
+				long available = cursor.get();
+				if (available == seen) {
+					if (!running)
+						return;
+					if (idle < SPIN_TRIES + YIELD_TRIES) {
+						if (idle++ < SPIN_TRIES)
+							Thread.onSpinWait();
+						else
+							Thread.yield();
+						continue;
+					}
+					// Announce the park before checking again, so the writer cannot
+					// publish in between without seeing the flag
+					parked = true;
+					if (cursor.get() == seen && running)
+						LockSupport.park(this);
+					parked = false;
+					continue;
+				}
+				idle = 0;
+				long last = Math.min(available, seen + maxBatch);
+				batch.clear();
+				for (long seq = seen + 1; seq <= last; seq++) {
+					batch.add((E) slots[(int) (seq & mask)]);
+				}
+				try {
+					consumer.onEvents(batch);
+				} catch (RuntimeException e) {
+					System.err.println("Subscriber " + thread.getName() + " failed: " + e);
+				}
+				sequence.set(last);
+			}
+		}
+
+		/** Number of published events this subscriber has not consumed yet */
+		public long getLag() {
+			return cursor.get() - sequence.get();
+		}
+
+		/** Stop after consuming everything published so far, and wait for the thread */
+		@Override
+		public void close() {
+			running = false;
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			subscriptions.remove(this);
+		}
+	}
+}
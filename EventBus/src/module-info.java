@@ -0,0 +1,6 @@
+/**
+ * In-process change event bus built on a single-writer ring buffer.
+ */
+module EventBus {
+	exports com.internship.events;
+}
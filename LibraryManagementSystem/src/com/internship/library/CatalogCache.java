@@ -0,0 +1,169 @@
+package com.internship.library;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Catalog Cache
+ *
+ * In-memory copy of the active books and users with a word index over titles
+ * and authors. Filled from a {@link CatalogSnapshot} at startup and kept in
+ * sync with {@link LibraryChangeEvent}s afterwards.
+ */
+public class CatalogCache {
+
+	/** A cached book */
+	public record Book(int id, String title, String author, boolean available) {
+	}
+
+	/** A cached user */
+	public record User(int id, String name) {
+	}
+
+	/** Cached books and users with the word index over them */
+	private record Contents(Map<Integer, Book> books, Map<Integer, User> users,
+			NavigableMap<String, Set<Integer>> wordIndex) {
+
+		Contents() {
+			this(new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>());
+		}
+	}
+
+	/**
+	 * Current contents. A reload builds new contents and swaps them in, so
+	 * readers never see a half-filled cache; change events update the current
+	 * contents in place.
+	 */
+	private volatile Contents contents = new Contents();
+
+	/** Create an empty cache */
+	public CatalogCache() {
+	}
+
+	/** Replace the cached contents */
+	public synchronized void load(Collection<Book> newBooks, Collection<User> newUsers) {
+		Contents fresh = new Contents();
+		newBooks.forEach(book -> putBook(fresh, book));
+		newUsers.forEach(user -> fresh.users().put(user.id(), user));
+		contents = fresh;
+	}
+
+	/** Active books ordered by ID */
+	public Collection<Book> books() {
+		return contents.books().values();
+	}
+
+	/** Active users ordered by ID */
+	public Collection<User> users() {
+		return contents.users().values();
+	}
+
+	public Book book(int id) {
+		return contents.books().get(id);
+	}
+
+	/**
+	 * Books where every word of the query starts a word of the title or author.
+	 * Words are separated by whitespace, the same rule
+	 * {@link #searchCondition} applies in the database.
+	 *
+	 * @param query Words to look for, case-insensitive
+	 * @return matching books ordered by ID
+	 */
+	public List<Book> search(String query) {
+		Contents current = contents;
+		List<Book> matches = new ArrayList<>();
+		Set<Integer> candidates = null;
+		for (String word : words(query)) {
+			Set<Integer> ids = new HashSet<>();
+			current.wordIndex().subMap(word, word + Character.MAX_VALUE).values().forEach(ids::addAll);
+			if (candidates == null)
+				candidates = new TreeSet<>(ids);
+			else
+				candidates.retainAll(ids);
+		}
+		if (candidates != null) {
+			for (int id : candidates) {
+				Book book = current.books().get(id);
+				if (book != null)
+					matches.add(book);
+			}
+		}
+		return matches;
+	}
+
+	/** Apply a committed change */
+	public synchronized void apply(LibraryChangeEvent event) {
+		Contents current = contents;
+		switch (event.type()) {
+		case BOOK_ADDED -> putBook(current, new Book(event.bookId(), event.title(), event.author(), true));
+		case BOOK_UPDATED -> {
+			Book old = removeBook(current, event.bookId());
+			putBook(current,
+					new Book(event.bookId(), event.title(), event.author(), old == null || old.available()));
+		}
+		case BOOK_DELETED -> removeBook(current, event.bookId());
+		case BOOK_BORROWED, BOOK_RETURNED -> current.books().computeIfPresent(event.bookId(), (id, book) -> new Book(
+				id, book.title(), book.author(), event.type() == LibraryChangeEvent.Type.BOOK_RETURNED));
+		case USER_ADDED, USER_UPDATED -> current.users().put(event.userId(), new User(event.userId(), event.name()));
+		case USER_DELETED -> current.users().remove(event.userId());
+		}
+	}
+
+	private static void putBook(Contents target, Book book) {
+		target.books().put(book.id(), book);
+		for (String word : words(book.title() + " " + book.author())) {
+			target.wordIndex().computeIfAbsent(word, w -> ConcurrentHashMap.newKeySet()).add(book.id());
+		}
+	}
+
+	private static Book removeBook(Contents target, int id) {
+		Book book = target.books().remove(id);
+		if (book != null) {
+			for (String word : words(book.title() + " " + book.author())) {
+				Set<Integer> ids = target.wordIndex().get(word);
+				if (ids != null)
+					ids.remove(id);
+			}
+		}
+		return book;
+	}
+
+	/**
+	 * SQL condition matching books the way {@link #search} does; bind the
+	 * parameters from {@link #searchParameters}
+	 */
+	public static String searchCondition(String query) {
+		String word = "(title LIKE ? OR title LIKE ? OR author LIKE ? OR author LIKE ?)";
+		return String.join(" AND ", Collections.nCopies(words(query).size(), word));
+	}
+
+	/** Parameters for {@link #searchCondition}: each word as a prefix of the text and of a later word */
+	public static List<String> searchParameters(String query) {
+		List<String> params = new ArrayList<>();
+		for (String word : words(query)) {
+			params.addAll(List.of(word + "%", "% " + word + "%", word + "%", "% " + word + "%"));
+		}
+		return params;
+	}
+
+	/** Lower-case words of a text; the query validation keeps LIKE wildcards out */
+	private static List<String> words(String text) {
+		List<String> words = new ArrayList<>();
+		for (String word : text.toLowerCase(Locale.ROOT).split("\\s+")) {
+			if (!word.isEmpty())
+				words.add(word);
+		}
+		return words;
+	}
+}
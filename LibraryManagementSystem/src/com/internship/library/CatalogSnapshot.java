@@ -0,0 +1,216 @@
+package com.internship.library;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catalog Snapshot
+ *
+ * Compact binary copy of the active books and users, so a restarting kiosk can
+ * fill its {@link CatalogCache} from a memory-mapped file before touching the
+ * database. Each snapshot carries a {@link Stamp} taken from the database when
+ * it was written; comparing it with a fresh stamp tells whether the snapshot is
+ * still current.
+ *
+ * Layout (big-endian): magic, format version, stamp, book count, books (id,
+ * available, title, author), user count, users (id, name). Strings are a
+ * length-prefixed UTF-8 byte sequence.
+ */
+public final class CatalogSnapshot {
+
+	private static final int MAGIC = 0x4C494253; // "LIBS"
+	private static final int FORMAT_VERSION = 1;
+
+	/** Smallest encoded book: id, available flag and two empty strings */
+	private static final int MIN_BOOK_BYTES = 4 + 1 + 4 + 4;
+
+	/** Smallest encoded user: id and an empty name */
+	private static final int MIN_USER_BYTES = 4 + 4;
+
+	/**
+	 * Summary of the database contents. Adding a row changes the count and
+	 * highest ID, and every update, borrow, return or delete bumps a row
+	 * version, so any committed change produces a different stamp.
+	 */
+	public record Stamp(long bookCount, long bookMaxId, long bookVersions, long userCount, long userMaxId,
+			long userVersions) {
+	}
+
+	/** Contents of a snapshot */
+	public record Catalog(Stamp stamp, List<CatalogCache.Book> books, List<CatalogCache.User> users) {
+	}
+
+	private CatalogSnapshot() {
+	}
+
+	// ================= DATABASE =================
+	/**
+	 * Read the current stamp from the global database and every shard
+	 *
+	 * @param router Shard router
+	 * @return database stamp
+	 * @throws SQLException on database errors
+	 */
+	public static Stamp readStamp(ShardRouter router) throws SQLException {
+		String sql = "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(SUM(version), 0) FROM ";
+		long[] books = { 0, 0, 0 };
+		for (long[] shard : router.scatter(conn -> List.of(aggregate(conn, sql + "books")))) {
+			books[0] += shard[0];
+			books[1] = Math.max(books[1], shard[1]);
+			books[2] += shard[2];
+		}
+		long[] users = aggregate(router.global(), sql + "users");
+		return new Stamp(books[0], books[1], books[2], users[0], users[1], users[2]);
+	}
+
+	private static long[] aggregate(Connection conn, String sql) throws SQLException {
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+			rs.next();
+			return new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) };
+		}
+	}
+
+	/**
+	 * Read the active catalog from the database
+	 *
+	 * @param router Shard router
+	 * @return catalog and the stamp taken just before reading it
+	 * @throws SQLException on database errors
+	 */
+	public static Catalog readDatabase(ShardRouter router) throws SQLException {
+		Stamp stamp = readStamp(router);
+		List<CatalogCache.Book> books = router.scatter(conn -> {
+			List<CatalogCache.Book> rows = new ArrayList<>();
+			String sql = "SELECT id, title, author, available FROM books WHERE active=TRUE ORDER BY id";
+			try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					rows.add(new CatalogCache.Book(rs.getInt("id"), rs.getString("title"), rs.getString("author"),
+							rs.getBoolean("available")));
+				}
+			}
+			return rows;
+		});
+		List<CatalogCache.User> users = new ArrayList<>();
+		String sql = "SELECT id, name FROM users WHERE active=TRUE ORDER BY id";
+		try (PreparedStatement ps = router.global().prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) {
+				users.add(new CatalogCache.User(rs.getInt("id"), rs.getString("name")));
+			}
+		}
+		return new Catalog(stamp, books, users);
+	}
+
+	// ================= FILE =================
+	/**
+	 * Write a snapshot file, replacing any previous one atomically
+	 *
+	 * @param file    Snapshot file
+	 * @param catalog Catalog to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, Catalog catalog) throws IOException {
+		Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "catalog", ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			Stamp stamp = catalog.stamp();
+			out.writeLong(stamp.bookCount());
+			out.writeLong(stamp.bookMaxId());
+			out.writeLong(stamp.bookVersions());
+			out.writeLong(stamp.userCount());
+			out.writeLong(stamp.userMaxId());
+			out.writeLong(stamp.userVersions());
+
+			out.writeInt(catalog.books().size());
+			for (CatalogCache.Book book : catalog.books()) {
+				out.writeInt(book.id());
+				out.writeBoolean(book.available());
+				writeString(out, book.title());
+				writeString(out, book.author());
+			}
+			out.writeInt(catalog.users().size());
+			for (CatalogCache.User user : catalog.users()) {
+				out.writeInt(user.id());
+				writeString(out, user.name());
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read a snapshot file through a memory mapping
+	 *
+	 * @param file Snapshot file
+	 * @return snapshot contents
+	 * @throws IOException if the file is missing, unreadable, corrupt or not a
+	 *                     snapshot of this format version
+	 */
+	public static Catalog read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.remaining() < 8 || buf.getInt() != MAGIC)
+				throw new IOException("Not a catalog snapshot: " + file);
+			int version = buf.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported snapshot format version " + version);
+			Stamp stamp = new Stamp(buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong(),
+					buf.getLong());
+
+			int bookCount = readCount(buf, MIN_BOOK_BYTES);
+			List<CatalogCache.Book> books = new ArrayList<>(bookCount);
+			for (int i = 0; i < bookCount; i++) {
+				int id = buf.getInt();
+				boolean available = buf.get() != 0;
+				books.add(new CatalogCache.Book(id, readString(buf), readString(buf), available));
+			}
+			int userCount = readCount(buf, MIN_USER_BYTES);
+			List<CatalogCache.User> users = new ArrayList<>(userCount);
+			for (int i = 0; i < userCount; i++) {
+				users.add(new CatalogCache.User(buf.getInt(), readString(buf)));
+			}
+			return new Catalog(stamp, books, users);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated catalog snapshot: " + file, e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Read an entry count, rejecting counts the rest of the file cannot hold */
+	private static int readCount(ByteBuffer buf, int minEntryBytes) throws IOException {
+		int count = buf.getInt();
+		if (count < 0 || count > buf.remaining() / minEntryBytes)
+			throw new IOException("Corrupt catalog snapshot: bad entry count " + count);
+		return count;
+	}
+
+	private static String readString(ByteBuffer buf) throws IOException {
+		int length = buf.getInt();
+		if (length < 0 || length > buf.remaining())
+			throw new IOException("Corrupt catalog snapshot: bad string length " + length);
+		byte[] bytes = new byte[length];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
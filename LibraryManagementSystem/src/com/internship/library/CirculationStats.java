@@ -0,0 +1,203 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Circulation Statistics
+ *
+ * Pre-aggregated borrow/return counters, materialized in three tables on every
+ * shard next to {@code transactions}:
+ * <ul>
+ * <li>{@code book_circulation}: borrows per book and month</li>
+ * <li>{@code user_circulation}: borrows per user</li>
+ * <li>{@code daily_circulation}: borrows, returns, completed loans and their
+ * total duration per day</li>
+ * </ul>
+ * Borrow and return transactions update the counters in the same transaction
+ * as the loan itself, so every desk and any dashboard sees the same numbers and
+ * nothing has to be rebuilt when a process starts. Dashboard questions (most
+ * borrowed titles, average loan duration) read only these small tables.
+ * {@link CirculationStatsRebuild} recomputes them from the transactions tables
+ * as an offline job.
+ */
+public class CirculationStats {
+
+	/** Zone that decides which day and month a borrow or return counts for */
+	static final ZoneId ZONE = ZoneId.systemDefault();
+
+	/** Borrow/return counters for a single day */
+	public record DayCounters(long borrows, long returns) {
+	}
+
+	private final ShardRouter router;
+
+	/**
+	 * @param router Shard router whose shards hold the counter tables
+	 */
+	public CirculationStats(ShardRouter router) {
+		this.router = router;
+	}
+
+	// ================= UPDATES =================
+	/**
+	 * Count a borrow inside the borrow transaction
+	 *
+	 * @param tx     Borrow transaction on the book's shard
+	 * @param userId Borrowing user
+	 * @param bookId Borrowed book
+	 * @param at     Time of the borrow
+	 * @throws SQLException on database errors
+	 */
+	public static void recordBorrow(TransactionTemplate.Transaction tx, int userId, int bookId, Instant at)
+			throws SQLException {
+		LocalDate day = LocalDate.ofInstant(at, ZONE);
+		try (PreparedStatement ps = tx.prepare("INSERT INTO book_circulation (book_id, borrow_month, borrows) "
+				+ "VALUES (?, ?, 1) ON DUPLICATE KEY UPDATE borrows=borrows+1")) {
+			ps.setInt(1, bookId);
+			ps.setString(2, YearMonth.from(day).toString());
+			ps.executeUpdate();
+		}
+		try (PreparedStatement ps = tx.prepare("INSERT INTO user_circulation (user_id, borrows) "
+				+ "VALUES (?, 1) ON DUPLICATE KEY UPDATE borrows=borrows+1")) {
+			ps.setInt(1, userId);
+			ps.executeUpdate();
+		}
+		try (PreparedStatement ps = tx.prepare("INSERT INTO daily_circulation (circulation_day, borrows) "
+				+ "VALUES (?, 1) ON DUPLICATE KEY UPDATE borrows=borrows+1")) {
+			ps.setDate(1, Date.valueOf(day));
+			ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Count a return inside the return transaction
+	 *
+	 * @param tx         Return transaction on the book's shard
+	 * @param borrowedAt Time of the matching borrow, or null if unknown
+	 * @param at         Time of the return
+	 * @throws SQLException on database errors
+	 */
+	public static void recordReturn(TransactionTemplate.Transaction tx, Instant borrowedAt, Instant at)
+			throws SQLException {
+		int completed = borrowedAt == null ? 0 : 1;
+		long seconds = borrowedAt == null ? 0 : Duration.between(borrowedAt, at).toSeconds();
+		try (PreparedStatement ps = tx.prepare("INSERT INTO daily_circulation "
+				+ "(circulation_day, returns, completed_loans, loan_seconds) VALUES (?, 1, ?, ?) "
+				+ "ON DUPLICATE KEY UPDATE returns=returns+1, completed_loans=completed_loans+?, "
+				+ "loan_seconds=loan_seconds+?")) {
+			ps.setDate(1, Date.valueOf(LocalDate.ofInstant(at, ZONE)));
+			ps.setInt(2, completed);
+			ps.setLong(3, seconds);
+			ps.setInt(4, completed);
+			ps.setLong(5, seconds);
+			ps.executeUpdate();
+		}
+	}
+
+	// ================= QUERIES =================
+	/**
+	 * Most borrowed books in a month
+	 *
+	 * @param month Month to rank
+	 * @param limit Maximum number of entries
+	 * @return book IDs mapped to borrow counts, highest first
+	 * @throws SQLException on database errors
+	 */
+	public List<Map.Entry<Integer, Long>> topBooks(YearMonth month, int limit) throws SQLException {
+		// Books live on one shard only, so the overall top is among each shard's top
+		List<Map.Entry<Integer, Long>> ranking = new ArrayList<>(router.scatter(conn -> {
+			List<Map.Entry<Integer, Long>> rows = new ArrayList<>();
+			String sql = "SELECT book_id, borrows FROM book_circulation WHERE borrow_month=? "
+					+ "ORDER BY borrows DESC LIMIT ?";
+			try (PreparedStatement ps = conn.prepareStatement(sql)) {
+				ps.setString(1, month.toString());
+				ps.setInt(2, limit);
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						rows.add(Map.entry(rs.getInt("book_id"), rs.getLong("borrows")));
+					}
+				}
+			}
+			return rows;
+		}));
+		ranking.sort(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()));
+		return ranking.size() > limit ? ranking.subList(0, limit) : ranking;
+	}
+
+	/**
+	 * Average duration of completed loans
+	 *
+	 * @return average duration, or zero when no loan was returned
+	 * @throws SQLException on database errors
+	 */
+	public Duration averageLoanDuration() throws SQLException {
+		long[] totals = sum("SELECT COALESCE(SUM(completed_loans), 0), COALESCE(SUM(loan_seconds), 0) "
+				+ "FROM daily_circulation");
+		return totals[0] == 0 ? Duration.ZERO : Duration.ofSeconds(totals[1] / totals[0]);
+	}
+
+	/**
+	 * Total borrows made by a user at every branch
+	 *
+	 * @param userId User
+	 * @return number of borrows
+	 * @throws SQLException on database errors
+	 */
+	public long borrowsByUser(int userId) throws SQLException {
+		return sum("SELECT COALESCE(SUM(borrows), 0) FROM user_circulation WHERE user_id=?", userId)[0];
+	}
+
+	/**
+	 * Borrow/return counters for a day at every branch
+	 *
+	 * @param day Day
+	 * @return counters, zero if nothing happened that day
+	 * @throws SQLException on database errors
+	 */
+	public DayCounters day(LocalDate day) throws SQLException {
+		long[] totals = sum("SELECT COALESCE(SUM(borrows), 0), COALESCE(SUM(returns), 0) "
+				+ "FROM daily_circulation WHERE circulation_day=?", Date.valueOf(day));
+		return new DayCounters(totals[0], totals[1]);
+	}
+
+	/** Run an aggregate query on every shard and add up its columns */
+	private long[] sum(String sql, Object... params) throws SQLException {
+		List<long[]> parts = router.scatter(conn -> List.of(aggregate(conn, sql, params)));
+		long[] totals = new long[parts.get(0).length];
+		for (long[] part : parts) {
+			for (int i = 0; i < totals.length; i++) {
+				totals[i] += part[i];
+			}
+		}
+		return totals;
+	}
+
+	private static long[] aggregate(Connection conn, String sql, Object... params) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			for (int i = 0; i < params.length; i++) {
+				ps.setObject(i + 1, params[i]);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				rs.next();
+				long[] row = new long[rs.getMetaData().getColumnCount()];
+				for (int i = 0; i < row.length; i++) {
+					row[i] = rs.getLong(i + 1);
+				}
+				return row;
+			}
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circulation Statistics Rebuild
+ *
+ * Offline job that recomputes the {@link CirculationStats} tables of every
+ * shard from its transactions table, e.g. after the tables were first created
+ * or loans were corrected by hand. Each shard's book IDs are split into
+ * contiguous ranges and each range is scanned on its own connection in
+ * parallel, through the book_id index. Since every loan belongs to one book, a
+ * range sees both the borrow and the return of each loan in order. The totals
+ * then replace the shard's counter tables in one transaction.
+ *
+ * Borrows and returns committed while a shard is being scanned are lost from
+ * its counters, so run it while the desks are closed.
+ *
+ * Usage: CirculationStatsRebuild [partitions]
+ */
+public class CirculationStatsRebuild {
+
+	/** Book IDs read per query */
+	private static final int SCAN_WINDOW = 10_000;
+
+	/** Rows inserted per batch when writing the counters */
+	private static final int WRITE_BATCH = 1_000;
+
+	private CirculationStatsRebuild() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int partitions = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		try (ShardRouter router = ShardRouter.load()) {
+			List<Connector> shards = router.shardConnectors();
+			List<Totals> totals = scan(shards, partitions);
+			for (int i = 0; i < shards.size(); i++) {
+				try (Connection conn = shards.get(i).open()) {
+					totals.get(i).write(conn);
+				}
+				System.out.printf("Shard %d: %d books, %d users, %d days%n", i, totals.get(i).perBook.size(),
+						totals.get(i).perUser.size(), totals.get(i).perDay.size());
+			}
+		}
+	}
+
+	/** Counters of one day */
+	private static class DayTotals {
+		private final LongAdder borrows = new LongAdder();
+		private final LongAdder returns = new LongAdder();
+		private final LongAdder completedLoans = new LongAdder();
+		private final LongAdder loanSeconds = new LongAdder();
+	}
+
+	/** Counters of one shard, built in memory while scanning */
+	private static class Totals {
+		private final Map<Integer, Map<YearMonth, LongAdder>> perBook = new ConcurrentHashMap<>();
+		private final Map<Integer, LongAdder> perUser = new ConcurrentHashMap<>();
+		private final Map<LocalDate, DayTotals> perDay = new ConcurrentHashMap<>();
+
+		/** Borrow time of every open loan, keyed by book ID */
+		private final Map<Integer, Instant> openLoans = new ConcurrentHashMap<>();
+
+		private DayTotals day(Instant at) {
+			return perDay.computeIfAbsent(LocalDate.ofInstant(at, CirculationStats.ZONE), k -> new DayTotals());
+		}
+
+		private void recordBorrow(int userId, int bookId, Instant at) {
+			perBook.computeIfAbsent(bookId, k -> new ConcurrentHashMap<>())
+					.computeIfAbsent(YearMonth.from(LocalDate.ofInstant(at, CirculationStats.ZONE)),
+							k -> new LongAdder())
+					.increment();
+			perUser.computeIfAbsent(userId, k -> new LongAdder()).increment();
+			day(at).borrows.increment();
+			openLoans.put(bookId, at);
+		}
+
+		private void recordReturn(int bookId, Instant at) {
+			DayTotals day = day(at);
+			day.returns.increment();
+			Instant borrowedAt = openLoans.remove(bookId);
+			if (borrowedAt != null) {
+				day.completedLoans.increment();
+				day.loanSeconds.add(Duration.between(borrowedAt, at).toSeconds());
+			}
+		}
+
+		/** Replace the shard's counter tables with these totals */
+		private void write(Connection conn) throws SQLException {
+			conn.setAutoCommit(false);
+			try {
+				try (Statement stmt = conn.createStatement()) {
+					stmt.executeUpdate("DELETE FROM book_circulation");
+					stmt.executeUpdate("DELETE FROM user_circulation");
+					stmt.executeUpdate("DELETE FROM daily_circulation");
+				}
+				try (PreparedStatement ps = conn.prepareStatement(
+						"INSERT INTO book_circulation (book_id, borrow_month, borrows) VALUES (?, ?, ?)")) {
+					int pending = 0;
+					for (Map.Entry<Integer, Map<YearMonth, LongAdder>> book : perBook.entrySet()) {
+						for (Map.Entry<YearMonth, LongAdder> month : book.getValue().entrySet()) {
+							ps.setInt(1, book.getKey());
+							ps.setString(2, month.getKey().toString());
+							ps.setLong(3, month.getValue().sum());
+							ps.addBatch();
+							if (++pending % WRITE_BATCH == 0)
+								ps.executeBatch();
+						}
+					}
+					ps.executeBatch();
+				}
+				try (PreparedStatement ps = conn
+						.prepareStatement("INSERT INTO user_circulation (user_id, borrows) VALUES (?, ?)")) {
+					int pending = 0;
+					for (Map.Entry<Integer, LongAdder> user : perUser.entrySet()) {
+						ps.setInt(1, user.getKey());
+						ps.setLong(2, user.getValue().sum());
+						ps.addBatch();
+						if (++pending % WRITE_BATCH == 0)
+							ps.executeBatch();
+					}
+					ps.executeBatch();
+				}
+				try (PreparedStatement ps = conn.prepareStatement("INSERT INTO daily_circulation "
+						+ "(circulation_day, borrows, returns, completed_loans, loan_seconds) "
+						+ "VALUES (?, ?, ?, ?, ?)")) {
+					int pending = 0;
+					for (Map.Entry<LocalDate, DayTotals> entry : perDay.entrySet()) {
+						DayTotals day = entry.getValue();
+						ps.setDate(1, Date.valueOf(entry.getKey()));
+						ps.setLong(2, day.borrows.sum());
+						ps.setLong(3, day.returns.sum());
+						ps.setLong(4, day.completedLoans.sum());
+						ps.setLong(5, day.loanSeconds.sum());
+						ps.addBatch();
+						if (++pending % WRITE_BATCH == 0)
+							ps.executeBatch();
+					}
+					ps.executeBatch();
+				}
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Scan every shard's transactions in parallel book ID ranges
+	 *
+	 * @param shards     Opens connections to each shard database
+	 * @param partitions Number of parallel ranges per shard
+	 * @return totals of each shard, in the order of {@code shards}
+	 * @throws SQLException if any range scan fails
+	 */
+	private static List<Totals> scan(List<Connector> shards, int partitions) throws SQLException {
+		List<Totals> totals = new ArrayList<>();
+		ExecutorService pool = Executors.newFixedThreadPool(shards.size() * partitions);
+		try {
+			List<Future<Void>> scans = new ArrayList<>();
+			for (Connector connector : shards) {
+				Totals shard = new Totals();
+				totals.add(shard);
+				long[] range;
+				try (Connection conn = connector.open()) {
+					range = bookIdRange(conn);
+				}
+				if (range == null)
+					continue;
+				long size = (range[1] - range[0]) / partitions + 1;
+				for (long from = range[0]; from <= range[1]; from += size) {
+					long first = from;
+					long last = Math.min(range[1], from + size - 1);
+					scans.add(pool.submit(() -> {
+						try (Connection conn = connector.open()) {
+							scanRange(conn, shard, first, last);
+						}
+						return null;
+					}));
+				}
+			}
+			for (Future<Void> scan : scans) {
+				scan.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Statistics rebuild interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException sqlException)
+				throw sqlException;
+			throw new SQLException("Statistics rebuild failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return totals;
+	}
+
+	/** Lowest and highest book ID with transactions, or null if there are none */
+	private static long[] bookIdRange(Connection conn) throws SQLException {
+		String sql = "SELECT MIN(book_id), MAX(book_id) FROM transactions";
+		try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+			rs.next();
+			long min = rs.getLong(1);
+			return rs.wasNull() ? null : new long[] { min, rs.getLong(2) };
+		}
+	}
+
+	/**
+	 * Replay the transactions of a book ID range, book by book in ID order. The
+	 * range is read in windows of {@link #SCAN_WINDOW} book IDs, so the driver
+	 * never buffers more than one window's rows.
+	 */
+	private static void scanRange(Connection conn, Totals totals, long first, long last) throws SQLException {
+		String sql = "SELECT user_id, book_id, action, date FROM transactions "
+				+ "WHERE book_id BETWEEN ? AND ? ORDER BY book_id, id";
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			for (long from = first; from <= last; from += SCAN_WINDOW) {
+				ps.setLong(1, from);
+				ps.setLong(2, Math.min(last, from + SCAN_WINDOW - 1));
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						Timestamp date = rs.getTimestamp("date");
+						Instant at = date == null ? Instant.now() : date.toInstant();
+						if ("BORROW".equalsIgnoreCase(rs.getString("action")))
+							totals.recordBorrow(rs.getInt("user_id"), rs.getInt("book_id"), at);
+						else
+							totals.recordReturn(rs.getInt("book_id"), at);
+					}
+				}
+			}
+		}
+	}
+}
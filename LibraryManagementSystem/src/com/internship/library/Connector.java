@@ -0,0 +1,14 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens a new database connection. Used wherever work is spread over several
+ * threads, since a single JDBC connection must not be shared between them.
+ */
+@FunctionalInterface
+public interface Connector {
+
+	Connection open() throws SQLException;
+}
@@ -0,0 +1,133 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deadlock Retry Check
+ *
+ * Two threads update the same two rows through a {@link TransactionTemplate},
+ * each on its own connection and locking the rows in opposite order. In every
+ * round both threads take their first lock before either asks for the second,
+ * so the database has to abort one of them. The check fails unless the aborted
+ * transactions were retried and every update was committed exactly once.
+ *
+ * Runs against an embedded H2 database by default; put the H2 jar (or another
+ * driver, with its URL) on the classpath.
+ *
+ * Usage: DeadlockRetryCheck [jdbcUrl] [rounds]
+ */
+public class DeadlockRetryCheck {
+
+	private static final String DEFAULT_URL = "jdbc:h2:mem:deadlock;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=2000";
+
+	private DeadlockRetryCheck() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : DEFAULT_URL;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+			stmt.execute("DROP TABLE IF EXISTS retry_check");
+			stmt.execute("CREATE TABLE retry_check (id INT PRIMARY KEY, updates INT NOT NULL)");
+			stmt.execute("INSERT INTO retry_check (id, updates) VALUES (1, 0), (2, 0)");
+		}
+
+		TransactionTemplate template = new TransactionTemplate(Duration.ofSeconds(30), Duration.ofMillis(1),
+				Duration.ofMillis(50), 0);
+		CyclicBarrier bothLocked = new CyclicBarrier(2);
+		CyclicBarrier roundDone = new CyclicBarrier(2);
+		AtomicInteger attempts = new AtomicInteger();
+		List<Thread> workers = new ArrayList<>();
+		List<Exception> failures = new ArrayList<>();
+
+		for (int t = 0; t < 2; t++) {
+			int first = t == 0 ? 1 : 2;
+			int second = t == 0 ? 2 : 1;
+			Thread thread = new Thread(() -> {
+				try (Connection conn = DriverManager.getConnection(url)) {
+					for (int round = 0; round < rounds; round++) {
+						boolean[] firstAttempt = { true };
+						template.execute(conn, tx -> {
+							attempts.incrementAndGet();
+							increment(tx, first);
+							// Meet the other thread only on the first attempt of a round; a
+							// retry runs while the other thread is already past its locks
+							if (firstAttempt[0]) {
+								firstAttempt[0] = false;
+								await(bothLocked);
+							}
+							increment(tx, second);
+							return null;
+						});
+						// Keep the winner from taking next round's lock while the other retries
+						await(roundDone);
+					}
+				} catch (Exception e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			workers.add(thread);
+			thread.start();
+		}
+		for (Thread thread : workers) {
+			thread.join();
+		}
+
+		if (!failures.isEmpty())
+			throw failures.get(0);
+		int committed = 2 * rounds;
+		int retries = attempts.get() - committed;
+		try (Connection conn = DriverManager.getConnection(url);
+				Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT id, updates FROM retry_check ORDER BY id")) {
+			while (rs.next()) {
+				if (rs.getInt("updates") != committed)
+					throw new AssertionError("Row " + rs.getInt("id") + " has " + rs.getInt("updates")
+							+ " updates, expected " + committed);
+			}
+		}
+		if (retries < rounds)
+			throw new AssertionError("Expected at least one retry per round, got " + retries + " in " + rounds);
+		System.out.printf("rounds=%d transactions=%d attempts=%d retries=%d: OK%n", rounds, committed,
+				attempts.get(), retries);
+	}
+
+	/** Lock a row and count one update on it */
+	private static void increment(TransactionTemplate.Transaction tx, int id) throws SQLException {
+		try (PreparedStatement lock = tx.prepare("SELECT updates FROM retry_check WHERE id=? FOR UPDATE")) {
+			lock.setInt(1, id);
+			lock.executeQuery().close();
+		}
+		try (PreparedStatement update = tx.prepare("UPDATE retry_check SET updates=updates+1 WHERE id=?")) {
+			update.setInt(1, id);
+			update.executeUpdate();
+		}
+	}
+
+	private static void await(CyclicBarrier barrier) throws SQLException {
+		try {
+			barrier.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for the other thread", e);
+		} catch (BrokenBarrierException | TimeoutException e) {
+			throw new SQLException("The other thread did not arrive", e);
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.internship.events.BatchConsumer;
+
+/**
+ * Due Date Scheduler
+ *
+ * Tracks open loans in memory and fires reminder and overdue events without
+ * scanning the transactions table. Every loan puts two triggers (a reminder
+ * shortly before the due date and the overdue trigger at the due date) into a
+ * queue indexed by due minute. Once a minute a background thread takes every
+ * bucket that has come due and hands the triggers to the listener in batches,
+ * so the cost of a tick depends only on the loans that fall due, not on the
+ * number of open loans.
+ *
+ * Every desk may run a scheduler, so loans are followed through the shared
+ * database rather than through local change events alone: each scheduler keeps
+ * its own connection to every shard and, on every tick (and right after a
+ * local borrow or return), reads the transactions added since it last looked,
+ * by primary key. Before a notice fires it is claimed by setting
+ * {@code reminded_at} or {@code overdue_notified_at} on the borrow row, only if
+ * still unset. Only the scheduler whose claim succeeds hands the notice to its
+ * listener, so each notice is sent once across all desks and restarts (at most
+ * once: a notice claimed by a process that dies before handing it on is lost).
+ *
+ * Returned loans are cancelled lazily: their triggers stay in the queue and are
+ * dropped when they come due. A reminder is dropped too when its loan is
+ * already past due, e.g. for loans loaded at startup after their due date.
+ */
+public class DueDateScheduler implements AutoCloseable {
+
+	/** How long a book may be kept */
+	public static final Duration LOAN_PERIOD = Duration.ofDays(14);
+
+	/** How long before the due date the reminder fires */
+	public static final Duration REMINDER_LEAD = Duration.ofDays(1);
+
+	/** Largest batch handed to the listener at once, and rows read per poll query */
+	private static final int BATCH_SIZE = 10_000;
+
+	private static final long TICK_MILLIS = 60_000;
+
+	/** An open loan */
+	public record Loan(int bookId, int userId, Instant due) {
+	}
+
+	/** A reminder or overdue notice for a loan */
+	public record DueEvent(Type type, Loan loan) {
+
+		public enum Type {
+			REMINDER, OVERDUE
+		}
+	}
+
+	private record Trigger(DueEvent.Type type, int bookId, Instant due) {
+	}
+
+	/** This scheduler's connection to a shard and the last transaction it has seen there */
+	private static class Shard {
+		private final Connection conn;
+		private long lastSeenId;
+
+		private Shard(Connection conn) {
+			this.conn = conn;
+		}
+	}
+
+	/** An open loan with the shard and ID of its borrow row, where notices are claimed */
+	private record OpenLoan(Loan loan, Shard shard, int borrowId) {
+	}
+
+	private final Clock clock;
+	private final BatchConsumer<DueEvent> listener;
+
+	/** Open loans keyed by book ID; a book has at most one open loan */
+	private final Map<Integer, OpenLoan> openLoans = new ConcurrentHashMap<>();
+
+	/** Open loans that have passed their due date */
+	private final Map<Integer, Loan> overdueLoans = new ConcurrentHashMap<>();
+
+	/** Pending triggers keyed by the minute they fire */
+	private final ConcurrentSkipListMap<Long, Set<Trigger>> queue = new ConcurrentSkipListMap<>();
+
+	private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "due-date-scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Used only on the ticker thread once started */
+	private final List<Shard> shards = new ArrayList<>();
+
+	/**
+	 * @param clock    Time source
+	 * @param listener Receives fired reminders and overdue notices in batches
+	 */
+	public DueDateScheduler(Clock clock, BatchConsumer<DueEvent> listener) {
+		this.clock = clock;
+		this.listener = listener;
+	}
+
+	/** Due date of a loan borrowed at the given time */
+	public static Instant dueDateFor(Instant borrowedAt) {
+		return borrowedAt.plus(LOAN_PERIOD);
+	}
+
+	/**
+	 * Open a connection to every shard, load the open loans once and start
+	 * firing due triggers once a minute
+	 *
+	 * @param connectors Opens a connection to each shard database
+	 * @throws SQLException if a shard cannot be read
+	 */
+	public void start(List<Connector> connectors) throws SQLException {
+		try {
+			for (Connector connector : connectors) {
+				Shard shard = new Shard(connector.open());
+				shards.add(shard);
+				loadOpenLoans(shard);
+			}
+		} catch (SQLException e) {
+			closeShards();
+			throw e;
+		}
+		ticker.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	// ================= LOANS =================
+	private void schedule(OpenLoan open) {
+		Loan loan = open.loan();
+		openLoans.put(loan.bookId(), open);
+		overdueLoans.remove(loan.bookId());
+		enqueue(new Trigger(DueEvent.Type.REMINDER, loan.bookId(), loan.due()), loan.due().minus(REMINDER_LEAD));
+		enqueue(new Trigger(DueEvent.Type.OVERDUE, loan.bookId(), loan.due()), loan.due());
+	}
+
+	private void cancel(int bookId) {
+		openLoans.remove(bookId);
+		overdueLoans.remove(bookId);
+	}
+
+	/**
+	 * Apply a committed change. A local borrow or return makes the scheduler
+	 * read the new transactions right away instead of at the next tick.
+	 */
+	public void apply(LibraryChangeEvent event) {
+		switch (event.type()) {
+		case BOOK_BORROWED, BOOK_RETURNED -> {
+			try {
+				ticker.execute(this::poll);
+			} catch (RejectedExecutionException e) {
+				// Closed; nothing left to follow
+			}
+		}
+		default -> {
+		}
+		}
+	}
+
+	/**
+	 * Load the open loans of one shard and remember its newest transaction, from
+	 * where {@link #poll} carries on. Loans borrowed before due dates were
+	 * recorded are due one loan period after the borrow.
+	 */
+	private void loadOpenLoans(Shard shard) throws SQLException {
+		try (Statement stmt = shard.conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transactions")) {
+			rs.next();
+			shard.lastSeenId = rs.getLong(1);
+		}
+		String sql = "SELECT t.id, t.book_id, t.user_id, t.date, t.due_date FROM transactions t "
+				+ "JOIN books b ON b.id=t.book_id WHERE b.available=FALSE AND t.action='BORROW' "
+				+ "AND t.id=(SELECT MAX(id) FROM transactions WHERE book_id=t.book_id)";
+		try (PreparedStatement ps = shard.conn.prepareStatement(sql)) {
+			ps.setFetchSize(1000);
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					schedule(borrow(shard, rs));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Follow the borrows and returns recorded on every shard, by any desk, since
+	 * the last look. Reads forward along the primary key in batches.
+	 */
+	private void poll() {
+		String sql = "SELECT id, book_id, user_id, action, date, due_date FROM transactions "
+				+ "WHERE id>? ORDER BY id LIMIT " + BATCH_SIZE;
+		for (Shard shard : shards) {
+			try (PreparedStatement ps = shard.conn.prepareStatement(sql)) {
+				int rows;
+				do {
+					rows = 0;
+					ps.setLong(1, shard.lastSeenId);
+					try (ResultSet rs = ps.executeQuery()) {
+						while (rs.next()) {
+							rows++;
+							shard.lastSeenId = rs.getLong("id");
+							if ("BORROW".equalsIgnoreCase(rs.getString("action")))
+								schedule(borrow(shard, rs));
+							else
+								cancel(rs.getInt("book_id"));
+						}
+					}
+				} while (rows == BATCH_SIZE);
+			} catch (SQLException e) {
+				System.err.println("Could not read new loans: " + e.getMessage());
+			}
+		}
+	}
+
+	private static OpenLoan borrow(Shard shard, ResultSet rs) throws SQLException {
+		Timestamp due = rs.getTimestamp("due_date");
+		Timestamp borrowed = rs.getTimestamp("date");
+		Loan loan = new Loan(rs.getInt("book_id"), rs.getInt("user_id"),
+				due != null ? due.toInstant() : dueDateFor(borrowed.toInstant()));
+		return new OpenLoan(loan, shard, rs.getInt("id"));
+	}
+
+	// ================= QUERIES =================
+	/** Number of open loans */
+	public int openLoanCount() {
+		return openLoans.size();
+	}
+
+	/** Overdue loans, earliest due first */
+	public List<Loan> overdueLoans() {
+		List<Loan> loans = new ArrayList<>(overdueLoans.values());
+		loans.sort(Comparator.comparing(Loan::due));
+		return loans;
+	}
+
+	// ================= FIRING =================
+	private void enqueue(Trigger trigger, Instant fireAt) {
+		queue.computeIfAbsent(minuteOf(fireAt), k -> ConcurrentHashMap.newKeySet()).add(trigger);
+	}
+
+	/** Catch up with the database, then fire every trigger whose minute has come */
+	void tick() {
+		poll();
+		Instant instant = clock.instant();
+		long now = minuteOf(instant);
+		List<DueEvent> batch = new ArrayList<>();
+		try {
+			Iterator<Map.Entry<Long, Set<Trigger>>> due = queue.headMap(now, true).entrySet().iterator();
+			while (due.hasNext()) {
+				Set<Trigger> bucket = due.next().getValue();
+				due.remove();
+				for (Trigger trigger : bucket) {
+					OpenLoan open = openLoans.get(trigger.bookId());
+					// Skip triggers of returned loans and of earlier loans of the same book
+					if (open == null || !open.loan().due().equals(trigger.due()))
+						continue;
+					Loan loan = open.loan();
+					if (trigger.type() == DueEvent.Type.REMINDER && !loan.due().isAfter(instant))
+						continue;
+					if (trigger.type() == DueEvent.Type.OVERDUE)
+						overdueLoans.put(loan.bookId(), loan);
+					if (!claim(open, trigger, instant))
+						continue;
+					batch.add(new DueEvent(trigger.type(), loan));
+					if (batch.size() == BATCH_SIZE) {
+						listener.onEvents(batch);
+						batch.clear();
+					}
+				}
+			}
+			if (!batch.isEmpty())
+				listener.onEvents(batch);
+		} catch (RuntimeException e) {
+			System.err.println("Due date listener failed: " + e);
+		}
+	}
+
+	/**
+	 * Record on the borrow row that a notice is being sent
+	 *
+	 * @return true if this scheduler is the one to send it; false if it was
+	 *         already sent, or the claim failed and is retried next minute
+	 */
+	private boolean claim(OpenLoan open, Trigger trigger, Instant now) {
+		String column = trigger.type() == DueEvent.Type.REMINDER ? "reminded_at" : "overdue_notified_at";
+		String sql = "UPDATE transactions SET " + column + "=? WHERE id=? AND " + column + " IS NULL";
+		try (PreparedStatement ps = open.shard().conn.prepareStatement(sql)) {
+			ps.setTimestamp(1, Timestamp.from(now));
+			ps.setInt(2, open.borrowId());
+			return ps.executeUpdate() == 1;
+		} catch (SQLException e) {
+			System.err.println("Could not claim due notice: " + e.getMessage());
+			enqueue(trigger, now.plusMillis(TICK_MILLIS));
+			return false;
+		}
+	}
+
+	private static long minuteOf(Instant instant) {
+		return Math.floorDiv(instant.toEpochMilli(), TICK_MILLIS);
+	}
+
+	@Override
+	public void close() {
+		ticker.shutdownNow();
+		try {
+			ticker.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		closeShards();
+	}
+
+	private void closeShards() {
+		for (Shard shard : shards) {
+			try {
+				shard.conn.close();
+			} catch (SQLException ignored) {
+			}
+		}
+		shards.clear();
+	}
+}
@@ -0,0 +1,41 @@
+package com.internship.library;
+
+import java.time.Instant;
+
+/**
+ * Published on {@link LibraryManagement#changeEvents()} after a book, user or
+ * loan change is committed. Fields that do not apply to a type are null (or 0
+ * for IDs).
+ *
+ * @param type   Kind of change
+ * @param bookId Book concerned, for book and loan changes
+ * @param userId User concerned, for user and loan changes
+ * @param title  Book title after the change
+ * @param author Book author after the change
+ * @param name   User name after the change
+ * @param at     Time the change was committed
+ * @param due    Due date, for borrows
+ */
+public record LibraryChangeEvent(Type type, int bookId, int userId, String title, String author, String name,
+		Instant at, Instant due) {
+
+	public enum Type {
+		BOOK_ADDED, BOOK_UPDATED, BOOK_DELETED, USER_ADDED, USER_UPDATED, USER_DELETED, BOOK_BORROWED, BOOK_RETURNED
+	}
+
+	static LibraryChangeEvent book(Type type, int bookId, String title, String author) {
+		return new LibraryChangeEvent(type, bookId, 0, title, author, null, Instant.now(), null);
+	}
+
+	static LibraryChangeEvent user(Type type, int userId, String name) {
+		return new LibraryChangeEvent(type, 0, userId, null, null, name, Instant.now(), null);
+	}
+
+	static LibraryChangeEvent borrowed(int bookId, int userId, Instant at, Instant due) {
+		return new LibraryChangeEvent(Type.BOOK_BORROWED, bookId, userId, null, null, null, at, due);
+	}
+
+	static LibraryChangeEvent returned(int bookId, int userId) {
+		return new LibraryChangeEvent(Type.BOOK_RETURNED, bookId, userId, null, null, null, Instant.now(), null);
+	}
+}
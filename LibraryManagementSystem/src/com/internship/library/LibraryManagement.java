@@ -1,12 +1,33 @@
 package com.internship.library;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.internship.events.EventBus;
+import com.internship.metrics.Counter;
+import com.internship.metrics.Metrics;
+import com.internship.metrics.Timer;
 
 /**
  * Library Management System
@@ -15,43 +36,174 @@ import java.util.Scanner;
  * Features include: - Add/View/Update/Delete books and users (soft delete) -
  * Borrow and return books with transaction history - Prevent deletion/update of
  * borrowed books - Prevent deletion of users with borrowed books - Transaction
- * safety and row locking to prevent concurrency issues
+ * safety and row locking to prevent concurrency issues - Optimistic
+ * (version checked) updates of books and users - Circulation statistics served
+ * from pre-aggregated counters - Books and loans sharded by branch, users kept
+ * in a global database (see {@link ShardRouter}) - Every committed change
+ * published as a {@link LibraryChangeEvent} - Kiosk mode
+ * ({@code --snapshot <file>}) serving book and user lists and search from a
+ * {@link CatalogCache} warmed from a {@link CatalogSnapshot} - Due dates on
+ * loans with reminder and overdue tracking by a {@link DueDateScheduler}
  */
 public class LibraryManagement {
 
-	private static final String URL = "jdbc:mysql://localhost:3306/library_db";
-	private static final String USER = "root";
-	private static final String PASSWORD = "Acer#";
+	/** Slots in the change event ring buffer */
+	private static final int EVENT_BUFFER_SIZE = 4096;
 
 	private static final Scanner scanner = new Scanner(System.in);
 
+	private static final Timer BORROW_TIMER = Metrics.timer("library_borrow_book");
+	private static final Timer RETURN_TIMER = Metrics.timer("library_return_book");
+	private static final Timer EXISTS_USER_TIMER = Metrics.timer("library_exists_user");
+	private static final Timer EXISTS_BOOK_TIMER = Metrics.timer("library_exists_book");
+	private static final Counter TRANSACTION_ERRORS = Metrics.counter("library_transaction_errors");
+	private static final Counter DUE_REMINDERS = Metrics.counter("library_due_reminders");
+	private static final Counter OVERDUE_NOTICES = Metrics.counter("library_overdue_notices");
+
+	private static final EventBus<LibraryChangeEvent> changeEvents = new EventBus<>(EVENT_BUFFER_SIZE);
+	private static final EventBus<DueDateScheduler.DueEvent> dueEvents = new EventBus<>(EVENT_BUFFER_SIZE);
+
+	/**
+	 * Runs borrow and return transactions; deadlocks and lock waits are retried
+	 * for up to three seconds, and a statement waiting longer than one second is
+	 * cancelled and retried
+	 */
+	private static final TransactionTemplate loans = new TransactionTemplate(Duration.ofSeconds(3),
+			Duration.ofMillis(10), Duration.ofMillis(250), 1);
+
+	/** Outcome of a borrow or return transaction */
+	private enum LoanOutcome {
+		DONE, ALREADY_BORROWED, NO_BORROW_RECORD, NOT_BORROWER
+	}
+
+	/** How often kiosk mode compares its snapshot with the database */
+	private static final long CATALOG_REFRESH_MINUTES = 5;
+
+	private static final DueDateScheduler dueDates = new DueDateScheduler(Clock.systemUTC(),
+			LibraryManagement::onDueEvents);
+
+	/** Catalog served in kiosk mode; null when reading straight from the database */
+	private static CatalogCache catalog;
+	private static volatile CatalogSnapshot.Stamp catalogStamp;
+
+	private LibraryManagement() {
+	}
+
+	/**
+	 * Change events for downstream subscribers. Events are published by the menu
+	 * thread only, after the change is committed.
+	 */
+	public static EventBus<LibraryChangeEvent> changeEvents() {
+		return changeEvents;
+	}
+
+	/**
+	 * Reminders and overdue notices for downstream subscribers (e.g. mail or SMS
+	 * senders). Events are published by the due date scheduler thread only.
+	 */
+	public static EventBus<DueDateScheduler.DueEvent> dueEvents() {
+		return dueEvents;
+	}
+
 	public static void main(String[] args) {
-		try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
-			System.out.println("Connected to Database!");
-
-			int choice;
-			do {
-				showMenu();
-				choice = getValidInt("Choose an option: ", 1, 11);
-
-				switch (choice) {
-				case 1 -> addBook(conn);
-				case 2 -> viewBooks(conn);
-				case 3 -> updateBook(conn);
-				case 4 -> deleteBook(conn);
-				case 5 -> addUser(conn);
-				case 6 -> viewUsers(conn);
-				case 7 -> updateUser(conn);
-				case 8 -> deleteUser(conn);
-				case 9 -> borrowBook(conn);
-				case 10 -> returnBook(conn);
-				case 11 -> System.out.println("Exiting...");
-				}
-			} while (choice != 11);
+		Path snapshotFile = args.length == 2 && args[0].equals("--snapshot") ? Path.of(args[1]) : null;
 
-		} catch (SQLException e) {
-			System.out.println("Database connection error: " + e.getMessage());
+		CompletableFuture<ShardRouter> database;
+		if (snapshotFile != null) {
+			// Kiosk mode: serve the snapshot right away and connect in the background
+			loadSnapshot(snapshotFile);
+			database = connectInBackground(snapshotFile);
+		} else {
+			try {
+				database = CompletableFuture.completedFuture(connect(null));
+			} catch (SQLException e) {
+				System.out.println("Database connection error: " + e.getMessage());
+				return;
+			} catch (IOException e) {
+				System.out.println("Error reading shard configuration: " + e.getMessage());
+				return;
+			}
 		}
+
+		int choice;
+		do {
+			showMenu();
+			choice = getValidInt("Choose an option: ", 1, 13);
+
+			ShardRouter router = database.isDone() && !database.isCompletedExceptionally() ? database.join() : null;
+			if (router == null && !servedFromCatalog(choice)) {
+				System.out.println(database.isDone() ? "Database is unavailable; only the catalog can be browsed."
+						: "Still connecting to the database. Try again shortly.");
+				continue;
+			}
+
+			switch (choice) {
+			case 1 -> addBook(router);
+			case 2 -> viewBooks(router);
+			case 3 -> updateBook(router);
+			case 4 -> deleteBook(router);
+			case 5 -> addUser(router.global());
+			case 6 -> viewUsers(router == null ? null : router.global());
+			case 7 -> updateUser(router.global());
+			case 8 -> deleteUser(router);
+			case 9 -> borrowBook(router);
+			case 10 -> returnBook(router);
+			case 11 -> viewStats(router);
+			case 12 -> searchBooks(router);
+			case 13 -> System.out.println("Exiting...");
+			}
+		} while (choice != 13);
+		changeEvents.close();
+		dueDates.close();
+		dueEvents.close();
+		database.thenAccept(ShardRouter::close);
+	}
+
+	/**
+	 * Connect to every shard and bring the in-memory views up to date: the
+	 * catalog cache in kiosk mode and the open loans
+	 * 
+	 * @param snapshotFile Snapshot file in kiosk mode, otherwise null
+	 * @return connected router
+	 * @throws SQLException if a database cannot be reached
+	 * @throws IOException  if the shard configuration cannot be read
+	 */
+	private static ShardRouter connect(Path snapshotFile) throws SQLException, IOException {
+		ShardRouter router = ShardRouter.load();
+		System.out.println("Connected to Database!");
+
+		if (snapshotFile != null)
+			startCatalog(router, snapshotFile);
+
+		startDueDates(router);
+		return router;
+	}
+
+	/**
+	 * Run {@link #connect} on a background thread so the menu can serve the
+	 * catalog cache in the meantime
+	 * 
+	 * @param snapshotFile Snapshot file
+	 * @return router once connected and loaded
+	 */
+	private static CompletableFuture<ShardRouter> connectInBackground(Path snapshotFile) {
+		CompletableFuture<ShardRouter> database = new CompletableFuture<>();
+		Thread starter = new Thread(() -> {
+			try {
+				database.complete(connect(snapshotFile));
+			} catch (SQLException | IOException | RuntimeException e) {
+				System.out.println("Database connection error: " + e.getMessage());
+				database.completeExceptionally(e);
+			}
+		}, "library-startup");
+		starter.setDaemon(true);
+		starter.start();
+		return database;
+	}
+
+	/** Whether a menu option works from the catalog cache before the database is connected */
+	private static boolean servedFromCatalog(int choice) {
+		return choice == 13 || catalog != null && (choice == 2 || choice == 6 || choice == 12);
 	}
 
 	// ================= MENU =================
@@ -70,16 +222,18 @@ public class LibraryManagement {
 		System.out.println("8. Delete User");
 		System.out.println("9. Borrow Book");
 		System.out.println("10. Return Book");
-		System.out.println("11. Exit");
+		System.out.println("11. Circulation Stats");
+		System.out.println("12. Search Books");
+		System.out.println("13. Exit");
 	}
 
 	// ================= BOOK CRUD =================
 	/**
-	 * Add a new book to the library
+	 * Add a new book to a branch of the library
 	 * 
-	 * @param conn Database connection
+	 * @param router Shard router
 	 */
-	private static void addBook(Connection conn) {
+	private static void addBook(ShardRouter router) {
 		try {
 			System.out.print("Enter book title: ");
 			String title = scanner.nextLine().trim();
@@ -95,12 +249,31 @@ public class LibraryManagement {
 				return;
 			}
 
+			int branchId = getValidBranch(router);
+			Connection conn = router.forBranch(branchId);
 			String sql = "INSERT INTO books (title, author, available, active) VALUES (?, ?, TRUE, TRUE)";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			conn.setAutoCommit(false);
+			try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 				stmt.setString(1, title);
 				stmt.setString(2, author);
 				stmt.executeUpdate();
+				int id = getGeneratedId(stmt);
+
+				// A book outside its branch's ID range would be routed to another shard
+				if (ShardRouter.branchOf(id) != branchId) {
+					conn.rollback();
+					System.out.printf("Book not added: the branch database allocated ID %d, which is outside "
+							+ "the branch's ID range. Check its books AUTO_INCREMENT.%n", id);
+					return;
+				}
+				conn.commit();
+				changeEvents.publish(LibraryChangeEvent.book(LibraryChangeEvent.Type.BOOK_ADDED, id, title, author));
 				System.out.println("Book added successfully.");
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
 			}
 		} catch (SQLException e) {
 			System.out.println("Error adding book: " + e.getMessage());
@@ -108,36 +281,95 @@ public class LibraryManagement {
 	}
 
 	/**
-	 * View all active books
+	 * View all active books of every branch
 	 * 
-	 * @param conn Database connection
+	 * @param router Shard router
 	 */
-	private static void viewBooks(Connection conn) {
-		String sql = "SELECT * FROM books WHERE active=TRUE";
-		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+	private static void viewBooks(ShardRouter router) {
+		try {
+			List<CatalogCache.Book> books = catalog != null ? new ArrayList<>(catalog.books())
+					: queryBooks(router, "SELECT * FROM books WHERE active=TRUE");
 			System.out.println("\nBook List:");
-			boolean found = false;
-			while (rs.next()) {
-				found = true;
-				System.out.printf("ID: %d | Title: %s | Author: %s | Available: %s%n", rs.getInt("id"),
-						rs.getString("title"), rs.getString("author"), rs.getBoolean("available") ? "Yes" : "No");
-			}
-			if (!found)
-				System.out.println("No books found.");
+			printBooks(router, books);
 		} catch (SQLException e) {
 			System.out.println("Error fetching books: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * Update book details Cannot update a book if it is currently borrowed
+	 * Search active books by title or author
 	 * 
-	 * @param conn Database connection
+	 * @param router Shard router
+	 */
+	private static void searchBooks(ShardRouter router) {
+		System.out.print("Enter title or author words: ");
+		String query = scanner.nextLine().trim();
+		if (!isValidText(query)) {
+			System.out.println("Invalid search text.");
+			return;
+		}
+
+		try {
+			List<CatalogCache.Book> books;
+			if (catalog != null) {
+				books = catalog.search(query);
+			} else {
+				String sql = "SELECT * FROM books WHERE active=TRUE AND " + CatalogCache.searchCondition(query);
+				books = queryBooks(router, sql, CatalogCache.searchParameters(query).toArray(String[]::new));
+			}
+			System.out.println("\nSearch Results:");
+			printBooks(router, books);
+		} catch (SQLException e) {
+			System.out.println("Error searching books: " + e.getMessage());
+		}
+	}
+
+	/** Run a book query on every shard */
+	private static List<CatalogCache.Book> queryBooks(ShardRouter router, String sql, String... params)
+			throws SQLException {
+		return router.scatter(conn -> {
+			List<CatalogCache.Book> rows = new ArrayList<>();
+			try (PreparedStatement ps = conn.prepareStatement(sql)) {
+				for (int i = 0; i < params.length; i++) {
+					ps.setString(i + 1, params[i]);
+				}
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next()) {
+						rows.add(new CatalogCache.Book(rs.getInt("id"), rs.getString("title"), rs.getString("author"),
+								rs.getBoolean("available")));
+					}
+				}
+			}
+			return rows;
+		});
+	}
+
+	private static void printBooks(ShardRouter router, List<CatalogCache.Book> books) {
+		for (CatalogCache.Book book : books) {
+			System.out.printf("ID: %d | Title: %s | Author: %s | Branch: %s | Available: %s%n", book.id(),
+					book.title(), book.author(), getBranchName(router, book.id()), book.available() ? "Yes" : "No");
+		}
+		if (books.isEmpty())
+			System.out.println("No books found.");
+	}
+
+	/**
+	 * Update book details Cannot update a book if it is currently borrowed. The
+	 * version read before prompting is checked again when writing, so a
+	 * concurrent edit or borrow is reported instead of overwritten.
+	 * 
+	 * @param router Shard router
 	 */
-	private static void updateBook(Connection conn) {
+	private static void updateBook(ShardRouter router) {
 		try {
 			int id = getValidInt("Enter Book ID to update: ", 1, Integer.MAX_VALUE);
-			if (!existsBook(conn, id)) {
+			if (!router.isKnownBook(id)) {
+				System.out.println("Book not found.");
+				return;
+			}
+			Connection conn = router.forBook(id);
+			int version = getBookVersion(conn, id);
+			if (version < 0) {
 				System.out.println("Book not found.");
 				return;
 			}
@@ -151,47 +383,92 @@ public class LibraryManagement {
 			System.out.print("Enter new author: ");
 			String author = scanner.nextLine().trim();
 
-			String sql = "UPDATE books SET title=?, author=? WHERE id=?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setString(1, title);
-				stmt.setString(2, author);
-				stmt.setInt(3, id);
-				stmt.executeUpdate();
+			switch (updateBookDetails(conn, id, version, title, author)) {
+			case UPDATED -> {
+				changeEvents.publish(LibraryChangeEvent.book(LibraryChangeEvent.Type.BOOK_UPDATED, id, title, author));
 				System.out.println("Book updated successfully.");
 			}
+			case CONFLICT -> System.out.println("Book was changed by someone else. Please try again.");
+			case NOT_FOUND -> System.out.println("Book not found.");
+			case BORROWED -> System.out.println("Cannot update a borrowed book.");
+			}
 		} catch (SQLException e) {
 			System.out.println("Error updating book: " + e.getMessage());
 		}
 	}
 
+	/**
+	 * Compare-and-set update of an available book
+	 * 
+	 * @param conn            Database connection
+	 * @param id              Book ID
+	 * @param expectedVersion Version read before the edit
+	 * @param title           New title
+	 * @param author          New author
+	 * @return result of the update
+	 * @throws SQLException on database errors
+	 */
+	static UpdateResult updateBookDetails(Connection conn, int id, int expectedVersion, String title, String author)
+			throws SQLException {
+		String sql = "UPDATE books SET title=?, author=?, version=version+1 "
+				+ "WHERE id=? AND version=? AND available=TRUE AND active=TRUE";
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, title);
+			stmt.setString(2, author);
+			stmt.setInt(3, id);
+			stmt.setInt(4, expectedVersion);
+			if (stmt.executeUpdate() == 1)
+				return UpdateResult.UPDATED;
+		}
+		if (!existsBook(conn, id))
+			return UpdateResult.NOT_FOUND;
+		return isBookAvailable(conn, id) ? UpdateResult.CONFLICT : UpdateResult.BORROWED;
+	}
+
 	/**
 	 * Soft delete a book Cannot delete a borrowed book
 	 * 
-	 * @param conn Database connection
+	 * @param router Shard router
 	 */
-	private static void deleteBook(Connection conn) {
+	private static void deleteBook(ShardRouter router) {
 		try {
 			int id = getValidInt("Enter Book ID to delete: ", 1, Integer.MAX_VALUE);
-			if (!existsBook(conn, id)) {
+			if (!router.isKnownBook(id)) {
 				System.out.println("Book not found.");
 				return;
 			}
-			if (!isBookAvailable(conn, id)) {
-				System.out.println("Cannot delete a borrowed book.");
-				return;
-			}
-
-			String sql = "UPDATE books SET active=FALSE WHERE id=?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setInt(1, id);
-				stmt.executeUpdate();
+			switch (softDeleteBook(router.forBook(id), id)) {
+			case UPDATED -> {
+				changeEvents.publish(LibraryChangeEvent.book(LibraryChangeEvent.Type.BOOK_DELETED, id, null, null));
 				System.out.println("Book deleted (soft delete).");
 			}
+			case NOT_FOUND, CONFLICT -> System.out.println("Book not found.");
+			case BORROWED -> System.out.println("Cannot delete a borrowed book.");
+			}
 		} catch (SQLException e) {
 			System.out.println("Error deleting book: " + e.getMessage());
 		}
 	}
 
+	/**
+	 * Soft delete an available book. Availability is checked by the update
+	 * itself, so a book borrowed concurrently is never deleted while on loan.
+	 * 
+	 * @param conn Database connection
+	 * @param id   Book ID
+	 * @return UPDATED, NOT_FOUND or BORROWED
+	 * @throws SQLException on database errors
+	 */
+	static UpdateResult softDeleteBook(Connection conn, int id) throws SQLException {
+		String sql = "UPDATE books SET active=FALSE, version=version+1 WHERE id=? AND available=TRUE AND active=TRUE";
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setInt(1, id);
+			if (stmt.executeUpdate() == 1)
+				return UpdateResult.UPDATED;
+		}
+		return existsBook(conn, id) ? UpdateResult.BORROWED : UpdateResult.NOT_FOUND;
+	}
+
 	// ================= USER CRUD =================
 	/**
 	 * Add a new user
@@ -208,9 +485,11 @@ public class LibraryManagement {
 			}
 
 			String sql = "INSERT INTO users (name, active) VALUES (?, TRUE)";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 				stmt.setString(1, name);
 				stmt.executeUpdate();
+				changeEvents.publish(
+						LibraryChangeEvent.user(LibraryChangeEvent.Type.USER_ADDED, getGeneratedId(stmt), name));
 				System.out.println("User added successfully.");
 			}
 		} catch (SQLException e) {
@@ -224,6 +503,14 @@ public class LibraryManagement {
 	 * @param conn Database connection
 	 */
 	private static void viewUsers(Connection conn) {
+		if (catalog != null) {
+			System.out.println("\nUser List:");
+			catalog.users().forEach(user -> System.out.printf("ID: %d | Name: %s%n", user.id(), user.name()));
+			if (catalog.users().isEmpty())
+				System.out.println("No users found.");
+			return;
+		}
+
 		String sql = "SELECT * FROM users WHERE active=TRUE";
 		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
 			System.out.println("\nUser List:");
@@ -240,14 +527,16 @@ public class LibraryManagement {
 	}
 
 	/**
-	 * Update user details
+	 * Update user details. The version read before prompting is checked again
+	 * when writing, so a concurrent edit is reported instead of overwritten.
 	 * 
 	 * @param conn Database connection
 	 */
 	private static void updateUser(Connection conn) {
 		try {
 			int id = getValidInt("Enter User ID to update: ", 1, Integer.MAX_VALUE);
-			if (!existsUser(conn, id)) {
+			int version = getUserVersion(conn, id);
+			if (version < 0) {
 				System.out.println("User not found.");
 				return;
 			}
@@ -255,39 +544,65 @@ public class LibraryManagement {
 			System.out.print("Enter new name: ");
 			String name = scanner.nextLine().trim();
 
-			String sql = "UPDATE users SET name=? WHERE id=?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setString(1, name);
-				stmt.setInt(2, id);
-				stmt.executeUpdate();
+			switch (updateUserName(conn, id, version, name)) {
+			case UPDATED -> {
+				changeEvents.publish(LibraryChangeEvent.user(LibraryChangeEvent.Type.USER_UPDATED, id, name));
 				System.out.println("User updated.");
 			}
+			case CONFLICT -> System.out.println("User was changed by someone else. Please try again.");
+			case NOT_FOUND, BORROWED -> System.out.println("User not found.");
+			}
 		} catch (SQLException e) {
 			System.out.println("Error updating user: " + e.getMessage());
 		}
 	}
 
 	/**
-	 * Soft delete a user Cannot delete a user with borrowed books
+	 * Compare-and-set update of a user's name
 	 * 
-	 * @param conn Database connection
+	 * @param conn            Database connection
+	 * @param id              User ID
+	 * @param expectedVersion Version read before the edit
+	 * @param name            New name
+	 * @return result of the update
+	 * @throws SQLException on database errors
 	 */
-	private static void deleteUser(Connection conn) {
+	static UpdateResult updateUserName(Connection conn, int id, int expectedVersion, String name)
+			throws SQLException {
+		String sql = "UPDATE users SET name=?, version=version+1 WHERE id=? AND version=? AND active=TRUE";
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setString(1, name);
+			stmt.setInt(2, id);
+			stmt.setInt(3, expectedVersion);
+			if (stmt.executeUpdate() == 1)
+				return UpdateResult.UPDATED;
+		}
+		return existsUser(conn, id) ? UpdateResult.CONFLICT : UpdateResult.NOT_FOUND;
+	}
+
+	/**
+	 * Soft delete a user Cannot delete a user with borrowed books in any branch
+	 * 
+	 * @param router Shard router
+	 */
+	private static void deleteUser(ShardRouter router) {
+		Connection conn = router.global();
 		try {
 			int id = getValidInt("Enter User ID to delete: ", 1, Integer.MAX_VALUE);
 			if (!existsUser(conn, id)) {
 				System.out.println("User not found.");
 				return;
 			}
-			if (hasBorrowedBooks(conn, id)) {
+			if (hasBorrowedBooks(router, id)) {
 				System.out.println("Cannot delete user with borrowed books.");
 				return;
 			}
 
-			String sql = "UPDATE users SET active=FALSE WHERE id=?";
+			String sql = "UPDATE users SET active=FALSE, version=version+1 WHERE id=?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setInt(1, id);
 				stmt.executeUpdate();
+				changeEvents.publish(LibraryChangeEvent.user(LibraryChangeEvent.Type.USER_DELETED, id, null));
 				System.out.println("User deleted (soft delete).");
 			}
 		} catch (SQLException e) {
@@ -299,137 +614,307 @@ public class LibraryManagement {
 	/**
 	 * Borrow a book Ensures the book is available and user exists
 	 * 
-	 * @param conn Database connection
+	 * @param router Shard router
 	 */
-	private static void borrowBook(Connection conn) {
-		try {
-			int userId = getValidInt("Enter User ID: ", 1, Integer.MAX_VALUE);
-			if (!existsUser(conn, userId)) {
-				System.out.println("User not found.");
-				return;
-			}
+	private static void borrowBook(ShardRouter router) {
+		int userId = getValidInt("Enter User ID: ", 1, Integer.MAX_VALUE);
+		if (!existsUser(router.global(), userId)) {
+			System.out.println("User not found.");
+			return;
+		}
 
-			int bookId = getValidInt("Enter Book ID: ", 1, Integer.MAX_VALUE);
-			if (!existsBook(conn, bookId)) {
-				System.out.println("Book not found.");
-				return;
-			}
+		int bookId = getValidInt("Enter Book ID: ", 1, Integer.MAX_VALUE);
+		if (!router.isKnownBook(bookId) || !existsBook(router.forBook(bookId), bookId)) {
+			System.out.println("Book not found.");
+			return;
+		}
 
-			conn.setAutoCommit(false);
+		Timer.Sample sample = BORROW_TIMER.start();
+		try {
+			borrowBook(router.forBook(bookId), userId, bookId);
+		} finally {
+			BORROW_TIMER.stop(sample);
+		}
+	}
 
-			// Lock the book row for concurrency safety
-			try (PreparedStatement lockStmt = conn
-					.prepareStatement("SELECT available FROM books WHERE id=? FOR UPDATE")) {
-				lockStmt.setInt(1, bookId);
-				try (ResultSet rs = lockStmt.executeQuery()) {
-					if (rs.next() && !rs.getBoolean("available")) {
-						System.out.println("Book already borrowed.");
-						conn.rollback();
-						return;
+	/**
+	 * Borrow transaction: lock the book row, mark it borrowed and record the
+	 * borrow. Retried on deadlocks; the event is published and the result
+	 * printed only once it has committed.
+	 * 
+	 * @param conn   Connection to the book's shard
+	 * @param userId Borrowing user
+	 * @param bookId Book to borrow
+	 */
+	private static void borrowBook(Connection conn, int userId, int bookId) {
+		Instant now = Instant.now();
+		Instant due = DueDateScheduler.dueDateFor(now);
+		try {
+			LoanOutcome outcome = loans.execute(conn, tx -> {
+				// Lock the book row for concurrency safety
+				try (PreparedStatement lockStmt = tx.prepare("SELECT available FROM books WHERE id=? FOR UPDATE")) {
+					lockStmt.setInt(1, bookId);
+					try (ResultSet rs = lockStmt.executeQuery()) {
+						if (rs.next() && !rs.getBoolean("available"))
+							return LoanOutcome.ALREADY_BORROWED;
 					}
 				}
-			}
 
-			// Mark book as borrowed
-			try (PreparedStatement update = conn.prepareStatement("UPDATE books SET available=FALSE WHERE id=?")) {
-				update.setInt(1, bookId);
-				update.executeUpdate();
-			}
+				// Mark book as borrowed
+				try (PreparedStatement update = tx
+						.prepare("UPDATE books SET available=FALSE, version=version+1 WHERE id=?")) {
+					update.setInt(1, bookId);
+					update.executeUpdate();
+				}
 
-			// Insert transaction record
-			try (PreparedStatement insert = conn.prepareStatement(
-					"INSERT INTO transactions (user_id, book_id, action, date) VALUES (?, ?, 'BORROW', NOW())")) {
-				insert.setInt(1, userId);
-				insert.setInt(2, bookId);
-				insert.executeUpdate();
-			}
+				// Insert transaction record with the due date
+				try (PreparedStatement insert = tx.prepare("INSERT INTO transactions "
+						+ "(user_id, book_id, action, date, due_date) VALUES (?, ?, 'BORROW', ?, ?)")) {
+					insert.setInt(1, userId);
+					insert.setInt(2, bookId);
+					insert.setTimestamp(3, Timestamp.from(now));
+					insert.setTimestamp(4, Timestamp.from(due));
+					insert.executeUpdate();
+				}
+				CirculationStats.recordBorrow(tx, userId, bookId, now);
+				return LoanOutcome.DONE;
+			});
 
-			conn.commit();
-			System.out.println("Book borrowed successfully.");
+			if (outcome == LoanOutcome.ALREADY_BORROWED) {
+				System.out.println("Book already borrowed.");
+				return;
+			}
+			changeEvents.publish(LibraryChangeEvent.borrowed(bookId, userId, now, due));
+			System.out.println("Book borrowed successfully. Due: " + LocalDate.ofInstant(due, ZoneId.systemDefault()));
 		} catch (SQLException e) {
 			System.out.println("Error borrowing book: " + e.getMessage());
-			try {
-				conn.rollback();
-			} catch (SQLException ignored) {
-			}
-		} finally {
-			try {
-				conn.setAutoCommit(true);
-			} catch (SQLException ignored) {
-			}
+			TRANSACTION_ERRORS.increment();
 		}
 	}
 
 	/**
 	 * Return a book Ensures only the user who borrowed can return
 	 * 
-	 * @param conn Database connection
+	 * @param router Shard router
 	 */
-	private static void returnBook(Connection conn) {
+	private static void returnBook(ShardRouter router) {
+		int userId = getValidInt("Enter User ID: ", 1, Integer.MAX_VALUE);
+		if (!existsUser(router.global(), userId)) {
+			System.out.println("User not found.");
+			return;
+		}
+
+		int bookId = getValidInt("Enter Book ID: ", 1, Integer.MAX_VALUE);
+		if (!router.isKnownBook(bookId) || !existsBook(router.forBook(bookId), bookId)) {
+			System.out.println("Book not found.");
+			return;
+		}
+
+		Timer.Sample sample = RETURN_TIMER.start();
 		try {
-			int userId = getValidInt("Enter User ID: ", 1, Integer.MAX_VALUE);
-			if (!existsUser(conn, userId)) {
-				System.out.println("User not found.");
-				return;
-			}
+			returnBook(router.forBook(bookId), userId, bookId);
+		} finally {
+			RETURN_TIMER.stop(sample);
+		}
+	}
 
-			int bookId = getValidInt("Enter Book ID: ", 1, Integer.MAX_VALUE);
-			if (!existsBook(conn, bookId)) {
-				System.out.println("Book not found.");
-				return;
-			}
+	/**
+	 * Return transaction: lock the book row, verify the last borrower, mark the
+	 * book available and record the return. Retried on deadlocks; the event is
+	 * published and the result printed only once it has committed.
+	 * 
+	 * @param conn   Connection to the book's shard
+	 * @param userId Returning user
+	 * @param bookId Book to return
+	 */
+	private static void returnBook(Connection conn, int userId, int bookId) {
+		Instant now = Instant.now();
+		try {
+			LoanOutcome outcome = loans.execute(conn, tx -> {
+				// Lock the book row so the borrower check and the return are atomic
+				try (PreparedStatement lockStmt = tx.prepare("SELECT available FROM books WHERE id=? FOR UPDATE")) {
+					lockStmt.setInt(1, bookId);
+					lockStmt.executeQuery().close();
+				}
 
-			// Check last transaction for this book
-			String sqlTx = "SELECT user_id, action FROM transactions WHERE book_id=? ORDER BY id DESC LIMIT 1";
-			int lastUserId = -1;
-			String lastAction = null;
-			try (PreparedStatement ps = conn.prepareStatement(sqlTx)) {
-				ps.setInt(1, bookId);
-				try (ResultSet rs = ps.executeQuery()) {
-					if (rs.next()) {
-						lastUserId = rs.getInt("user_id");
-						lastAction = rs.getString("action");
-					} else {
-						System.out.println("Book has no borrow record.");
-						return;
+				// Check last transaction for this book
+				String sqlTx = "SELECT user_id, action, date FROM transactions WHERE book_id=? "
+						+ "ORDER BY id DESC LIMIT 1";
+				Timestamp borrowedAt;
+				try (PreparedStatement ps = tx.prepare(sqlTx)) {
+					ps.setInt(1, bookId);
+					try (ResultSet rs = ps.executeQuery()) {
+						if (!rs.next())
+							return LoanOutcome.NO_BORROW_RECORD;
+						if (!"BORROW".equalsIgnoreCase(rs.getString("action")) || rs.getInt("user_id") != userId)
+							return LoanOutcome.NOT_BORROWER;
+						borrowedAt = rs.getTimestamp("date");
 					}
 				}
-			}
 
-			if (!"BORROW".equalsIgnoreCase(lastAction) || lastUserId != userId) {
-				System.out.println("This user cannot return the book.");
-				return;
-			}
+				// Mark book as available
+				try (PreparedStatement updateBook = tx
+						.prepare("UPDATE books SET available=TRUE, version=version+1 WHERE id=?")) {
+					updateBook.setInt(1, bookId);
+					updateBook.executeUpdate();
+				}
 
-			conn.setAutoCommit(false);
+				// Insert return transaction
+				try (PreparedStatement insertTx = tx.prepare(
+						"INSERT INTO transactions (user_id, book_id, action, date) VALUES (?, ?, 'RETURN', ?)")) {
+					insertTx.setInt(1, userId);
+					insertTx.setInt(2, bookId);
+					insertTx.setTimestamp(3, Timestamp.from(now));
+					insertTx.executeUpdate();
+				}
+				CirculationStats.recordReturn(tx, borrowedAt == null ? null : borrowedAt.toInstant(), now);
+				return LoanOutcome.DONE;
+			});
 
-			// Mark book as available
-			try (PreparedStatement updateBook = conn.prepareStatement("UPDATE books SET available=TRUE WHERE id=?")) {
-				updateBook.setInt(1, bookId);
-				updateBook.executeUpdate();
+			switch (outcome) {
+			case NO_BORROW_RECORD -> System.out.println("Book has no borrow record.");
+			case NOT_BORROWER -> System.out.println("This user cannot return the book.");
+			default -> {
+				changeEvents.publish(LibraryChangeEvent.returned(bookId, userId));
+				System.out.println("Book returned successfully.");
 			}
-
-			// Insert return transaction
-			try (PreparedStatement insertTx = conn.prepareStatement(
-					"INSERT INTO transactions (user_id, book_id, action, date) VALUES (?, ?, 'RETURN', NOW())")) {
-				insertTx.setInt(1, userId);
-				insertTx.setInt(2, bookId);
-				insertTx.executeUpdate();
 			}
-
-			conn.commit();
-			System.out.println("Book returned successfully.");
 		} catch (SQLException e) {
 			System.out.println("Error returning book: " + e.getMessage());
+			TRANSACTION_ERRORS.increment();
+		}
+	}
+
+	// ================= KIOSK MODE =================
+	/**
+	 * Fill the catalog cache from a snapshot file before connecting to the
+	 * database. A missing or unreadable snapshot leaves the cache empty until the
+	 * database has been read.
+	 * 
+	 * @param file Snapshot file
+	 */
+	private static void loadSnapshot(Path file) {
+		catalog = new CatalogCache();
+		if (!Files.exists(file))
+			return;
+		try {
+			CatalogSnapshot.Catalog snapshot = CatalogSnapshot.read(file);
+			catalog.load(snapshot.books(), snapshot.users());
+			catalogStamp = snapshot.stamp();
+			System.out.printf("Loaded %d books and %d users from snapshot.%n", snapshot.books().size(),
+					snapshot.users().size());
+		} catch (IOException e) {
+			System.out.println("Ignoring catalog snapshot: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Keep the catalog cache in sync: apply local change events, read the
+	 * database now if no snapshot was loaded, and compare the snapshot's stamp
+	 * with the database in the background every few minutes, reloading and
+	 * rewriting the snapshot when they differ.
+	 * 
+	 * @param router Shard router
+	 * @param file   Snapshot file
+	 */
+	private static void startCatalog(ShardRouter router, Path file) {
+		changeEvents.subscribe("catalog-cache", 256, events -> events.forEach(catalog::apply));
+		if (catalogStamp == null) {
 			try {
-				conn.rollback();
-			} catch (SQLException ignored) {
+				refreshCatalog(router, file);
+			} catch (SQLException | IOException e) {
+				System.out.println("Could not load catalog: " + e.getMessage());
 			}
-		} finally {
-			try {
-				conn.setAutoCommit(true);
-			} catch (SQLException ignored) {
+		}
+
+		ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "catalog-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		refresher.scheduleWithFixedDelay(() -> {
+			// The menu thread owns the main router's connections, so use separate ones
+			try (ShardRouter own = ShardRouter.load()) {
+				if (!CatalogSnapshot.readStamp(own).equals(catalogStamp))
+					refreshCatalog(own, file);
+			} catch (SQLException | IOException e) {
+				System.err.println("Catalog refresh failed: " + e.getMessage());
 			}
+		}, catalogStamp == null ? CATALOG_REFRESH_MINUTES : 0, CATALOG_REFRESH_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/** Reload the catalog cache from the database and rewrite the snapshot */
+	private static void refreshCatalog(ShardRouter router, Path file) throws SQLException, IOException {
+		CatalogSnapshot.Catalog fresh = CatalogSnapshot.readDatabase(router);
+		catalog.load(fresh.books(), fresh.users());
+		catalogStamp = fresh.stamp();
+		CatalogSnapshot.write(file, fresh);
+	}
+
+	// ================= STATISTICS =================
+	/**
+	 * Show circulation statistics from the counter tables and the open loans
+	 * tracked in memory. Only the titles of the top books are read from the
+	 * books table.
+	 * 
+	 * @param router Shard router
+	 */
+	private static void viewStats(ShardRouter router) {
+		CirculationStats stats = new CirculationStats(router);
+		YearMonth month = YearMonth.now();
+		List<Map.Entry<Integer, Long>> top;
+		Duration average;
+		try {
+			top = stats.topBooks(month, 5);
+			average = stats.averageLoanDuration();
+		} catch (SQLException e) {
+			System.out.println("Error reading circulation statistics: " + e.getMessage());
+			return;
+		}
+		System.out.println("\nMost Borrowed Books (" + month + "):");
+		if (top.isEmpty())
+			System.out.println("No borrows this month.");
+		for (Map.Entry<Integer, Long> entry : top) {
+			System.out.printf("ID: %d | Title: %s | Borrows: %d%n", entry.getKey(), getBookTitle(router, entry.getKey()),
+					entry.getValue());
+		}
+
+		System.out.printf("Average loan duration: %d days %d hours%n", average.toDays(), average.toHoursPart());
+		System.out.println("Open loans: " + dueDates.openLoanCount());
+
+		List<DueDateScheduler.Loan> overdue = dueDates.overdueLoans();
+		System.out.println("Overdue loans: " + overdue.size());
+		for (DueDateScheduler.Loan loan : overdue) {
+			System.out.printf("Book ID: %d | User ID: %d | Due: %s%n", loan.bookId(), loan.userId(),
+					LocalDate.ofInstant(loan.due(), ZoneId.systemDefault()));
+		}
+	}
+
+	// ================= DUE DATES =================
+	/**
+	 * Load the open loans of every shard once and start firing due triggers;
+	 * local borrows and returns make the scheduler catch up right away
+	 * 
+	 * @param router Shard router
+	 */
+	private static void startDueDates(ShardRouter router) {
+		try {
+			dueDates.start(router.shardConnectors());
+		} catch (SQLException e) {
+			System.out.println("Could not load open loans: " + e.getMessage());
+			return;
+		}
+		changeEvents.subscribe("due-dates", 256, events -> events.forEach(dueDates::apply));
+	}
+
+	/** Count fired reminders and overdue notices and publish them to subscribers */
+	private static void onDueEvents(List<DueDateScheduler.DueEvent> events) {
+		for (DueDateScheduler.DueEvent event : events) {
+			if (event.type() == DueDateScheduler.DueEvent.Type.OVERDUE)
+				OVERDUE_NOTICES.increment();
+			else
+				DUE_REMINDERS.increment();
+			dueEvents.publish(event);
 		}
 	}
 
@@ -458,6 +943,7 @@ public class LibraryManagement {
 
 	/** Check if user exists and is active */
 	private static boolean existsUser(Connection conn, int userId) {
+		Timer.Sample sample = EXISTS_USER_TIMER.start();
 		String sql = "SELECT id FROM users WHERE id=? AND active=TRUE";
 		try (PreparedStatement ps = conn.prepareStatement(sql)) {
 			ps.setInt(1, userId);
@@ -466,11 +952,14 @@ public class LibraryManagement {
 			}
 		} catch (SQLException e) {
 			return false;
+		} finally {
+			EXISTS_USER_TIMER.stop(sample);
 		}
 	}
 
 	/** Check if book exists and is active */
 	private static boolean existsBook(Connection conn, int bookId) {
+		Timer.Sample sample = EXISTS_BOOK_TIMER.start();
 		String sql = "SELECT id FROM books WHERE id=? AND active=TRUE";
 		try (PreparedStatement ps = conn.prepareStatement(sql)) {
 			ps.setInt(1, bookId);
@@ -479,6 +968,27 @@ public class LibraryManagement {
 			}
 		} catch (SQLException e) {
 			return false;
+		} finally {
+			EXISTS_BOOK_TIMER.stop(sample);
+		}
+	}
+
+	/** Get the version of an active book, or -1 if it does not exist */
+	static int getBookVersion(Connection conn, int bookId) throws SQLException {
+		return getVersion(conn, "SELECT version FROM books WHERE id=? AND active=TRUE", bookId);
+	}
+
+	/** Get the version of an active user, or -1 if it does not exist */
+	static int getUserVersion(Connection conn, int userId) throws SQLException {
+		return getVersion(conn, "SELECT version FROM users WHERE id=? AND active=TRUE", userId);
+	}
+
+	private static int getVersion(Connection conn, String sql, int id) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setInt(1, id);
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getInt("version") : -1;
+			}
 		}
 	}
 
@@ -495,15 +1005,71 @@ public class LibraryManagement {
 		}
 	}
 
-	/** Check if user has any borrowed books */
-	private static boolean hasBorrowedBooks(Connection conn, int userId) {
-		String sql = "SELECT b.id FROM books b JOIN transactions t ON b.id=t.book_id "
-				+ "WHERE t.user_id=? AND b.available=FALSE";
-		try (PreparedStatement ps = conn.prepareStatement(sql)) {
-			ps.setInt(1, userId);
+	/** Ask for a branch when more than one is configured */
+	private static int getValidBranch(ShardRouter router) {
+		List<ShardRouter.Branch> branches = router.branches();
+		if (branches.size() == 1)
+			return branches.get(0).id();
+
+		for (ShardRouter.Branch branch : branches) {
+			System.out.println(branch.id() + ". " + branch.name());
+		}
+		while (true) {
+			int id = getValidInt("Choose branch: ", 0, ShardRouter.MAX_BRANCH);
+			if (branches.stream().anyMatch(b -> b.id() == id))
+				return id;
+			System.out.println("Unknown branch.");
+		}
+	}
+
+	/** Get the name of the branch owning a book */
+	private static String getBranchName(ShardRouter router, int bookId) {
+		if (router == null)
+			return "?";
+		return router.isKnownBook(bookId) ? router.branch(ShardRouter.branchOf(bookId)).name() : "?";
+	}
+
+	/** Get the ID generated by an INSERT, or 0 if none was returned */
+	private static int getGeneratedId(PreparedStatement stmt) throws SQLException {
+		try (ResultSet keys = stmt.getGeneratedKeys()) {
+			return keys.next() ? keys.getInt(1) : 0;
+		}
+	}
+
+	/** Get a book title, or "?" if it cannot be read */
+	private static String getBookTitle(ShardRouter router, int bookId) {
+		CatalogCache.Book cached = catalog != null ? catalog.book(bookId) : null;
+		if (cached != null)
+			return cached.title();
+		if (!router.isKnownBook(bookId))
+			return "?";
+		String sql = "SELECT title FROM books WHERE id=?";
+		try (PreparedStatement ps = router.forBook(bookId).prepareStatement(sql)) {
+			ps.setInt(1, bookId);
 			try (ResultSet rs = ps.executeQuery()) {
-				return rs.next();
+				return rs.next() ? rs.getString("title") : "?";
 			}
+		} catch (SQLException e) {
+			return "?";
+		}
+	}
+
+	/** Check if user has any borrowed books in any branch */
+	private static boolean hasBorrowedBooks(ShardRouter router, int userId) {
+		String sql = "SELECT b.id FROM books b JOIN transactions t ON b.id=t.book_id "
+				+ "WHERE t.user_id=? AND b.available=FALSE LIMIT 1";
+		try {
+			return !router.scatter(conn -> {
+				List<Integer> ids = new ArrayList<>();
+				try (PreparedStatement ps = conn.prepareStatement(sql)) {
+					ps.setInt(1, userId);
+					try (ResultSet rs = ps.executeQuery()) {
+						if (rs.next())
+							ids.add(rs.getInt(1));
+					}
+				}
+				return ids;
+			}).isEmpty();
 		} catch (SQLException e) {
 			return false;
 		}
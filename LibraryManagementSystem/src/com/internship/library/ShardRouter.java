@@ -0,0 +1,310 @@
+package com.internship.library;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shard Router
+ *
+ * Routes library data to databases. Books and loans belong to a branch shard,
+ * users live in one global database. Every branch owns a fixed range of book
+ * IDs, so the shard of a book is known from its ID alone: branch {@code b}
+ * allocates IDs {@code b * BRANCH_ID_RANGE + 1} to
+ * {@code (b + 1) * BRANCH_ID_RANGE}.
+ *
+ * Branches are read from {@code library-shards.properties} in the working
+ * directory when present:
+ *
+ * <pre>
+ * global.url=jdbc:mysql://hq:3306/library_db
+ * branch.0.name=Main
+ * branch.0.url=jdbc:mysql://hq:3306/library_db
+ * branch.1.name=North
+ * branch.1.url=jdbc:mysql://north:3306/library_db
+ * </pre>
+ *
+ * Without the file a single branch 0 uses the same database as the users, which
+ * is the original single-database layout. Each branch needs a database of its
+ * own, since a books table allocates IDs from a single counter; the users
+ * database may double as one branch's shard, sharing its connection. On
+ * startup every shard is checked to allocate book IDs inside its branch's
+ * range.
+ */
+public class ShardRouter implements AutoCloseable {
+
+	/** Number of book IDs owned by each branch */
+	public static final int BRANCH_ID_RANGE = 100_000_000;
+
+	/** Highest branch number whose ID range fits in an INT column */
+	public static final int MAX_BRANCH = Integer.MAX_VALUE / BRANCH_ID_RANGE - 1;
+
+	static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/library_db";
+	static final String DEFAULT_USER = "root";
+	static final String DEFAULT_PASSWORD = "Acer#";
+
+	private static final Path CONFIG = Path.of("library-shards.properties");
+
+	/** A library branch and the database holding its books and loans */
+	public record Branch(int id, String name, String url) {
+	}
+
+	private final String user;
+	private final String password;
+	private final String globalUrl;
+	private final Map<Integer, Branch> branches;
+	private final Map<String, Connection> connections = new LinkedHashMap<>();
+
+	/** Runs {@link #scatter} queries, one thread per shard, for the life of the router */
+	private final ExecutorService pool;
+
+	/**
+	 * Create a router and connect to every configured database
+	 *
+	 * @param globalUrl JDBC URL of the users database
+	 * @param branches  Branch shards
+	 * @param user      Database user
+	 * @param password  Database password
+	 * @throws SQLException if a database cannot be reached
+	 */
+	public ShardRouter(String globalUrl, List<Branch> branches, String user, String password) throws SQLException {
+		this.globalUrl = globalUrl;
+		this.user = user;
+		this.password = password;
+		this.branches = new TreeMap<>();
+		Map<String, Branch> byUrl = new LinkedHashMap<>();
+		for (Branch branch : branches) {
+			if (branch.id() < 0 || branch.id() > MAX_BRANCH)
+				throw new IllegalArgumentException("Branch number must be between 0 and " + MAX_BRANCH);
+			Branch other = byUrl.putIfAbsent(branch.url(), branch);
+			if (other != null)
+				throw new IllegalArgumentException(String.format(
+						"Branches %d and %d share database %s; each branch needs its own books table",
+						other.id(), branch.id(), branch.url()));
+			this.branches.put(branch.id(), branch);
+		}
+		if (this.branches.isEmpty())
+			throw new IllegalArgumentException("At least one branch is required");
+
+		ThreadFactory daemons = runnable -> {
+			Thread thread = new Thread(runnable, "shard-query");
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.pool = Executors.newFixedThreadPool(this.branches.size(), daemons);
+
+		try {
+			connect(globalUrl);
+			for (Branch branch : this.branches.values()) {
+				connect(branch.url());
+			}
+			verifyIdRanges();
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Load the shard layout from {@code library-shards.properties}, or use the
+	 * single-database layout if the file does not exist
+	 *
+	 * @return connected router
+	 * @throws SQLException if a database cannot be reached
+	 * @throws IOException  if the configuration cannot be read
+	 */
+	public static ShardRouter load() throws SQLException, IOException {
+		if (!Files.exists(CONFIG))
+			return new ShardRouter(DEFAULT_URL, List.of(new Branch(0, "Main", DEFAULT_URL)), DEFAULT_USER,
+					DEFAULT_PASSWORD);
+
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(CONFIG)) {
+			props.load(in);
+		}
+		List<Branch> branches = new ArrayList<>();
+		for (int id = 0; id <= MAX_BRANCH; id++) {
+			String url = props.getProperty("branch." + id + ".url");
+			if (url != null)
+				branches.add(new Branch(id, props.getProperty("branch." + id + ".name", "Branch " + id), url));
+		}
+		return new ShardRouter(props.getProperty("global.url", DEFAULT_URL), branches,
+				props.getProperty("user", DEFAULT_USER), props.getProperty("password", DEFAULT_PASSWORD));
+	}
+
+	private Connection connect(String url) throws SQLException {
+		Connection conn = connections.get(url);
+		if (conn == null) {
+			conn = DriverManager.getConnection(url, user, password);
+			connections.put(url, conn);
+		}
+		return conn;
+	}
+
+	/**
+	 * Check that every shard hands out book IDs from its branch's range.
+	 * Otherwise new books would be routed to another branch's shard.
+	 *
+	 * @throws SQLException if a shard allocates IDs outside its branch's range
+	 */
+	private void verifyIdRanges() throws SQLException {
+		for (Branch branch : branches.values()) {
+			long next = nextBookId(connections.get(branch.url()));
+			if ((next - 1) / BRANCH_ID_RANGE != branch.id())
+				throw new SQLException(String.format(
+						"Shard %s would give new books ID %d, outside the range of branch %d (%s). "
+								+ "Run ALTER TABLE books AUTO_INCREMENT = %d; on it.",
+						branch.url(), next, branch.id(), branch.name(), (long) branch.id() * BRANCH_ID_RANGE + 1));
+		}
+	}
+
+	/** ID the next book inserted into a shard will get */
+	private static long nextBookId(Connection conn) throws SQLException {
+		long next;
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM books")) {
+			rs.next();
+			next = rs.getLong(1);
+		}
+		try (Statement stmt = conn.createStatement()) {
+			try {
+				// MySQL 8 caches AUTO_INCREMENT in information_schema unless told not to
+				stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+			} catch (SQLException ignored) {
+			}
+			String sql = "SELECT AUTO_INCREMENT FROM information_schema.TABLES "
+					+ "WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME='books'";
+			try (ResultSet rs = stmt.executeQuery(sql)) {
+				if (rs.next() && rs.getObject(1) != null)
+					next = Math.max(next, rs.getLong(1));
+			} catch (SQLException e) {
+				// Not MySQL; the highest ID is all there is to go on
+			}
+		}
+		return next;
+	}
+
+	// ================= ROUTING =================
+	/** Connection to the global users database */
+	public Connection global() {
+		return connections.get(globalUrl);
+	}
+
+	/** Connection to a branch shard */
+	public Connection forBranch(int branchId) {
+		return connections.get(branch(branchId).url());
+	}
+
+	/** Connection to the shard that owns a book */
+	public Connection forBook(int bookId) {
+		return forBranch(branchOf(bookId));
+	}
+
+	/** Branch number owning a book ID */
+	public static int branchOf(int bookId) {
+		return (bookId - 1) / BRANCH_ID_RANGE;
+	}
+
+	/** Whether a book ID belongs to a configured branch */
+	public boolean isKnownBook(int bookId) {
+		return bookId > 0 && branches.containsKey(branchOf(bookId));
+	}
+
+	/** All configured branches, ordered by number */
+	public List<Branch> branches() {
+		return new ArrayList<>(branches.values());
+	}
+
+	public Branch branch(int branchId) {
+		Branch branch = branches.get(branchId);
+		if (branch == null)
+			throw new IllegalArgumentException("Unknown branch: " + branchId);
+		return branch;
+	}
+
+	/**
+	 * Connectors that open a new connection to each shard database, in branch
+	 * order, for work that runs on several threads
+	 */
+	public List<Connector> shardConnectors() {
+		List<Connector> connectors = new ArrayList<>();
+		branches.values().stream().map(Branch::url)
+				.forEach(url -> connectors.add(() -> DriverManager.getConnection(url, user, password)));
+		return connectors;
+	}
+
+	/** Connector that opens a new connection to a branch shard */
+	public Connector connector(int branchId) {
+		String url = branch(branchId).url();
+		return () -> DriverManager.getConnection(url, user, password);
+	}
+
+	// ================= SCATTER-GATHER =================
+	/** Query run against one shard database */
+	@FunctionalInterface
+	public interface ShardQuery<T> {
+		List<T> run(Connection conn) throws SQLException;
+	}
+
+	/**
+	 * Run a query on every shard database in parallel and concatenate the
+	 * results in branch order
+	 *
+	 * @param query Query to run on each shard
+	 * @return combined results
+	 * @throws SQLException if any shard fails
+	 */
+	public <T> List<T> scatter(ShardQuery<T> query) throws SQLException {
+		List<Connection> shards = branches.values().stream().map(b -> connections.get(b.url())).toList();
+		if (shards.size() == 1)
+			return query.run(shards.get(0));
+
+		try {
+			List<Future<List<T>>> parts = new ArrayList<>();
+			for (Connection shard : shards) {
+				parts.add(pool.submit(() -> query.run(shard)));
+			}
+			List<T> results = new ArrayList<>();
+			for (Future<List<T>> part : parts) {
+				results.addAll(part.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Shard query interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException sqlException)
+				throw sqlException;
+			throw new SQLException("Shard query failed", e.getCause());
+		}
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+		for (Connection conn : connections.values()) {
+			try {
+				conn.close();
+			} catch (SQLException ignored) {
+			}
+		}
+		connections.clear();
+	}
+}
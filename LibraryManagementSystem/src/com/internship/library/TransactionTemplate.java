@@ -0,0 +1,227 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.internship.metrics.Counter;
+import com.internship.metrics.Metrics;
+
+/**
+ * Transaction Template
+ *
+ * Runs a unit of work in a database transaction and retries it when the
+ * database aborts it for a transient reason: a deadlock, a serialization
+ * failure or a lock wait timeout. Between attempts it sleeps for a random time
+ * below an exponentially growing cap (full jitter), so that transactions that
+ * collided once do not collide again in lock step. Retries stop once the time
+ * budget would be exceeded and the last failure is rethrown.
+ *
+ * Statements prepared through {@link Transaction#prepare} time out when the
+ * budget runs out, or earlier when a shorter statement timeout is set. A
+ * statement that times out is treated like a lock wait timeout and retried if
+ * budget is left: the transactions run here only read and write single rows by
+ * key, so a timeout means they waited for a row lock.
+ *
+ * The work must only touch the database; anything visible outside it (events,
+ * messages) belongs after {@link #execute} returns, since an attempt may be
+ * rolled back and run again.
+ */
+public class TransactionTemplate {
+
+	/** A unit of work run inside the transaction */
+	@FunctionalInterface
+	public interface Work<T> {
+		T run(Transaction tx) throws SQLException;
+	}
+
+	/** The current attempt: its connection and what is left of the time budget */
+	public final class Transaction {
+
+		private final Connection conn;
+		private final long deadline;
+
+		private Transaction(Connection conn, long deadline) {
+			this.conn = conn;
+			this.deadline = deadline;
+		}
+
+		public Connection getConnection() {
+			return conn;
+		}
+
+		/**
+		 * Prepare a statement that times out when the budget runs out, or after the
+		 * statement timeout if that comes first
+		 *
+		 * @param sql Statement text
+		 * @return the prepared statement
+		 * @throws SQLException on database errors, or if the budget is spent
+		 */
+		public PreparedStatement prepare(String sql) throws SQLException {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				throw new SQLTimeoutException("Transaction time budget exceeded");
+			// Whole seconds, rounded up so the last statement still gets a chance
+			int seconds = (int) Math.min(Integer.MAX_VALUE, (remaining + 999_999_999) / 1_000_000_000);
+			if (statementTimeoutSeconds > 0)
+				seconds = Math.min(seconds, statementTimeoutSeconds);
+			PreparedStatement ps = conn.prepareStatement(sql);
+			ps.setQueryTimeout(seconds);
+			return ps;
+		}
+	}
+
+	/** How a failed attempt is handled */
+	public enum Failure {
+		/** Rolled back by the database for a transient reason; run the work again */
+		RETRYABLE,
+		/** Anything else; give up */
+		FATAL
+	}
+
+	/** MySQL: deadlock found when trying to get lock */
+	private static final int ER_LOCK_DEADLOCK = 1213;
+
+	/** MySQL: lock wait timeout exceeded */
+	private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+	private static final Counter ATTEMPTS = Metrics.counter("library_transaction_attempts");
+	private static final Counter RETRIES = Metrics.counter("library_transaction_retries");
+	private static final Counter EXHAUSTED = Metrics.counter("library_transaction_retries_exhausted");
+
+	private final Duration budget;
+	private final Duration baseBackoff;
+	private final Duration maxBackoff;
+	private final int statementTimeoutSeconds;
+
+	/**
+	 * @param budget                  Total time allowed for all attempts
+	 * @param baseBackoff             Backoff cap after the first failure
+	 * @param maxBackoff              Largest backoff cap
+	 * @param statementTimeoutSeconds Longest a statement may run within the
+	 *                                budget, zero for no limit but the budget
+	 */
+	public TransactionTemplate(Duration budget, Duration baseBackoff, Duration maxBackoff,
+			int statementTimeoutSeconds) {
+		this.budget = budget;
+		this.baseBackoff = baseBackoff;
+		this.maxBackoff = maxBackoff;
+		this.statementTimeoutSeconds = statementTimeoutSeconds;
+	}
+
+	/**
+	 * Run the work in a transaction, retrying transient failures. The work is
+	 * committed when it returns and rolled back when it throws; the connection's
+	 * auto-commit mode is restored afterwards.
+	 *
+	 * @param conn Connection to run on
+	 * @param work Unit of work; may run more than once
+	 * @return the result of the attempt that committed
+	 * @throws SQLException on fatal failures, or the last transient failure
+	 *                      once the budget is spent
+	 */
+	public <T> T execute(Connection conn, Work<T> work) throws SQLException {
+		long deadline = System.nanoTime() + budget.toNanos();
+		boolean autoCommit = conn.getAutoCommit();
+		conn.setAutoCommit(false);
+		try {
+			for (int attempt = 0;; attempt++) {
+				ATTEMPTS.increment();
+				try {
+					T result = work.run(new Transaction(conn, deadline));
+					conn.commit();
+					return result;
+				} catch (SQLException e) {
+					rollback(conn, e);
+					if (classify(e) == Failure.FATAL)
+						throw e;
+					long sleep = backoffNanos(attempt);
+					if (System.nanoTime() + sleep > deadline) {
+						EXHAUSTED.increment();
+						throw e;
+					}
+					RETRIES.increment();
+					pause(sleep, e);
+				} catch (RuntimeException e) {
+					conn.rollback();
+					throw e;
+				}
+			}
+		} finally {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Decide whether a failure is worth retrying. Looks at the whole chain of
+	 * causes and next exceptions, since drivers and pools often wrap the
+	 * original error.
+	 *
+	 * @param e Failure to classify
+	 * @return how the failure is handled
+	 */
+	public static Failure classify(SQLException e) {
+		for (Throwable t = e; t != null; t = next(t)) {
+			if (t instanceof SQLException sql && isTransient(sql))
+				return Failure.RETRYABLE;
+		}
+		return Failure.FATAL;
+	}
+
+	private static boolean isTransient(SQLException e) {
+		String state = e.getSQLState();
+		if (e.getErrorCode() == ER_LOCK_DEADLOCK || e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT)
+			return true;
+		// Statement timeout, taken as a lock wait (see the class comment)
+		if (e instanceof SQLTimeoutException)
+			return true;
+		if (state == null)
+			return e instanceof SQLTransactionRollbackException;
+		return switch (state) {
+		// serialization failure (MySQL deadlocks also use this state)
+		case "40001" -> true;
+		// PostgreSQL deadlock detected
+		case "40P01" -> true;
+		// H2 lock timeout
+		case "HYT00" -> true;
+		default -> e instanceof SQLTransactionRollbackException;
+		};
+	}
+
+	private static Throwable next(Throwable t) {
+		if (t instanceof SQLException sql && sql.getNextException() != null)
+			return sql.getNextException();
+		return t.getCause() == t ? null : t.getCause();
+	}
+
+	/** Random backoff below min(maxBackoff, baseBackoff * 2^attempt) */
+	private long backoffNanos(int attempt) {
+		long cap = baseBackoff.toNanos() << Math.min(attempt, 20);
+		cap = Math.min(cap, maxBackoff.toNanos());
+		return ThreadLocalRandom.current().nextLong(cap + 1);
+	}
+
+	private static void pause(long nanos, SQLException cause) throws SQLException {
+		try {
+			Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			SQLException interrupted = new SQLException("Transaction retry interrupted", e);
+			interrupted.addSuppressed(cause);
+			throw interrupted;
+		}
+	}
+
+	private static void rollback(Connection conn, SQLException cause) {
+		try {
+			conn.rollback();
+		} catch (SQLException e) {
+			cause.addSuppressed(e);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.internship.library;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.internship.metrics.LatencyHistogram;
+
+/**
+ * Update Contention Benchmark
+ *
+ * Several threads edit the same book at once, each on its own connection. The
+ * optimistic variant reads the version and retries the compare-and-set update
+ * on conflict; the locking variant takes the row lock with SELECT ... FOR
+ * UPDATE inside a transaction. Both report throughput, conflict retries and
+ * latency percentiles for a complete edit.
+ *
+ * Runs against an embedded H2 database by default; put the H2 jar (or another
+ * driver, with its URL) on the classpath. The books table is created if it is
+ * missing, and the book the threads compete for is deleted again afterwards.
+ *
+ * Usage: UpdateContentionBenchmark [jdbcUrl] [threads] [editsPerThread]
+ */
+public class UpdateContentionBenchmark {
+
+	private static final String DEFAULT_URL = "jdbc:h2:mem:contention;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+
+	private interface Variant {
+		/** Apply one edit; returns the number of retries it needed */
+		int edit(Connection conn, int bookId, String title) throws SQLException;
+	}
+
+	private UpdateContentionBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : DEFAULT_URL;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int edits = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+		Connector connector = () -> DriverManager.getConnection(url);
+		try (Connection conn = connector.open()) {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("CREATE TABLE IF NOT EXISTS books (id INT AUTO_INCREMENT PRIMARY KEY, "
+						+ "title VARCHAR(255) NOT NULL, author VARCHAR(255) NOT NULL, available BOOLEAN DEFAULT TRUE, "
+						+ "version INT NOT NULL DEFAULT 0, active BOOLEAN NOT NULL DEFAULT TRUE)");
+			}
+			int bookId = createBook(conn);
+			try {
+				run("optimistic", UpdateContentionBenchmark::optimisticEdit, connector, bookId, threads, edits);
+				run("locking", UpdateContentionBenchmark::lockingEdit, connector, bookId, threads, edits);
+			} finally {
+				try (PreparedStatement ps = conn.prepareStatement("DELETE FROM books WHERE id=?")) {
+					ps.setInt(1, bookId);
+					ps.executeUpdate();
+				}
+			}
+		}
+	}
+
+	/** Run one variant and print its results */
+	private static void run(String name, Variant variant, Connector connector, int bookId, int threads, int edits)
+			throws Exception {
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAdder retries = new LongAdder();
+		CountDownLatch startSignal = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		List<Exception> failures = new ArrayList<>();
+
+		for (int t = 0; t < threads; t++) {
+			int worker = t;
+			Thread thread = new Thread(() -> {
+				try (Connection conn = connector.open()) {
+					startSignal.await();
+					for (int i = 0; i < edits; i++) {
+						long start = System.nanoTime();
+						retries.add(variant.edit(conn, bookId, "Bench " + worker + "-" + i));
+						latency.record(System.nanoTime() - start);
+					}
+				} catch (Exception e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			workers.add(thread);
+			thread.start();
+		}
+
+		long began = System.nanoTime();
+		startSignal.countDown();
+		for (Thread thread : workers) {
+			thread.join();
+		}
+		double seconds = (System.nanoTime() - began) / 1e9;
+
+		if (!failures.isEmpty())
+			throw failures.get(0);
+		System.out.printf("%-10s threads=%d edits=%d throughput=%.0f/s retries=%d p50=%.2fms p99=%.2fms max=%.2fms%n",
+				name, threads, latency.getCount(), latency.getCount() / seconds, retries.sum(),
+				latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6, latency.getMax() / 1e6);
+	}
+
+	/** Read the version and retry the compare-and-set update until it wins */
+	private static int optimisticEdit(Connection conn, int bookId, String title) throws SQLException {
+		int retries = 0;
+		while (true) {
+			int version = LibraryManagement.getBookVersion(conn, bookId);
+			UpdateResult result = LibraryManagement.updateBookDetails(conn, bookId, version, title, "Benchmark");
+			if (result == UpdateResult.UPDATED)
+				return retries;
+			if (result != UpdateResult.CONFLICT)
+				throw new SQLException("Unexpected update result: " + result);
+			retries++;
+		}
+	}
+
+	/** Lock the row, check it is still editable and update it */
+	private static int lockingEdit(Connection conn, int bookId, String title) throws SQLException {
+		conn.setAutoCommit(false);
+		try {
+			try (PreparedStatement lock = conn
+					.prepareStatement("SELECT available FROM books WHERE id=? AND active=TRUE FOR UPDATE")) {
+				lock.setInt(1, bookId);
+				try (ResultSet rs = lock.executeQuery()) {
+					if (!rs.next() || !rs.getBoolean("available"))
+						throw new SQLException("Book is not editable");
+				}
+			}
+			try (PreparedStatement update = conn
+					.prepareStatement("UPDATE books SET title=?, author=?, version=version+1 WHERE id=?")) {
+				update.setString(1, title);
+				update.setString(2, "Benchmark");
+				update.setInt(3, bookId);
+				update.executeUpdate();
+			}
+			conn.commit();
+			return 0;
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	/** Insert the book that all threads compete for */
+	private static int createBook(Connection conn) throws SQLException {
+		String sql = "INSERT INTO books (title, author, available, active) VALUES ('Bench', 'Benchmark', TRUE, TRUE)";
+		try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+			ps.executeUpdate();
+			try (ResultSet keys = ps.getGeneratedKeys()) {
+				keys.next();
+				return keys.getInt(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.internship.library;
+
+/**
+ * Outcome of a compare-and-set update on a versioned row.
+ */
+public enum UpdateResult {
+	/** Row matched the expected version and was updated */
+	UPDATED,
+	/** Row was changed by someone else since its version was read */
+	CONFLICT,
+	/** Row does not exist or was deleted */
+	NOT_FOUND,
+	/** Book is borrowed and cannot be edited */
+	BORROWED
+}
@@ -5,5 +5,9 @@
  * 
  */
 module LibraryManagementSystem {
-	requires java.sql;
+	requires transitive java.sql;
+	requires Metrics;
+	requires transitive EventBus;
+
+	exports com.internship.library;
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.internship.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter. Increments are no-ops when metrics are disabled.
+ */
+public class Counter implements CounterMXBean {
+
+	private final String name;
+	private final LongAdder value = new LongAdder();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	/** Add one */
+	public void increment() {
+		if (Metrics.ENABLED)
+			value.increment();
+	}
+
+	/** Add an amount */
+	public void add(long amount) {
+		if (Metrics.ENABLED)
+			value.add(amount);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCount() {
+		return value.sum();
+	}
+}
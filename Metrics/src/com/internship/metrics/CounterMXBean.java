@@ -0,0 +1,9 @@
+package com.internship.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMXBean {
+
+	long getCount();
+}
@@ -0,0 +1,130 @@
+package com.internship.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ *
+ * Values below 256 ns are counted exactly; above that every power of two is
+ * split into 128 sub-buckets, so recorded values keep better than 1% relative
+ * precision. Recording is a single atomic increment and never allocates.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** Largest trackable value (about 4.8 hours); larger values are clamped */
+	private static final long MAX_VALUE = (1L << 44) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/** Create an empty histogram */
+	public LatencyHistogram() {
+	}
+
+	/**
+	 * Record one value
+	 *
+	 * @param nanos Latency in nanoseconds; negative values count as zero
+	 */
+	public void record(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/** Number of recorded values */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/** Sum of all recorded values in nanoseconds */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/** Largest recorded value in nanoseconds */
+	public long getMax() {
+		return max.get();
+	}
+
+	/** Mean of all recorded values in nanoseconds, or zero when empty */
+	public double getMean() {
+		long n = getCount();
+		return n == 0 ? 0 : (double) getSum() / n;
+	}
+
+	/**
+	 * Value at a percentile
+	 *
+	 * @param percentile Percentile between 0 and 100
+	 * @return upper bound of the bucket holding the percentile, in nanoseconds
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= target)
+				return Math.min(highestValueAt(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Add every value recorded by another histogram, e.g. to combine per-thread
+	 * histograms after a run
+	 *
+	 * @param other Histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length(); i++) {
+			long n = other.counts.get(i);
+			if (n != 0)
+				counts.addAndGet(i, n);
+		}
+		count.add(other.getCount());
+		sum.add(other.getSum());
+		max.accumulate(other.getMax());
+	}
+
+	/** Reset all counts */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/** Bucket index of a value */
+	private static int indexOf(long value) {
+		int exponent = Math.max(0, 63 - Long.numberOfLeadingZeros(value | 1) - SUB_BUCKET_BITS);
+		return (exponent << SUB_BUCKET_BITS) + (int) (value >>> exponent);
+	}
+
+	/** Largest value that maps to a bucket index */
+	private static long highestValueAt(int index) {
+		int exponent = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+		long subBucket = index - ((long) exponent << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << exponent) - 1;
+	}
+}
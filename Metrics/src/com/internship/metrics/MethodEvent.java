@@ -0,0 +1,20 @@
+package com.internship.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted for every timed call while a recording has it enabled. The
+ * event's own duration is the duration of the call.
+ */
+@Name("com.internship.MethodCall")
+@Label("Method Call")
+@Category("Internship")
+@Description("Duration of an instrumented operation")
+class MethodEvent extends jdk.jfr.Event {
+
+	@Label("Operation")
+	String operation;
+}
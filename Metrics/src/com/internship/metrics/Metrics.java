@@ -0,0 +1,119 @@
+package com.internship.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of timers and counters shared by all applications.
+ *
+ * Instrumentation is off unless the JVM is started with
+ * {@code -Dmetrics.enabled=true}. When enabled, every metric is registered
+ * with JMX under {@code com.internship.metrics} and can also be exported in
+ * Prometheus text format:
+ * <ul>
+ * <li>{@code -Dmetrics.http.port=9404} serves {@code /metrics} over HTTP</li>
+ * <li>{@code -Dmetrics.file=metrics.prom} rewrites a file every few seconds
+ * and on exit</li>
+ * </ul>
+ */
+public final class Metrics {
+
+	/** Whether instrumentation is active; fixed at startup so disabled checks fold away */
+	public static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+
+	private static final String JMX_DOMAIN = "com.internship.metrics";
+
+	private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+	private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+	static {
+		if (ENABLED)
+			startExporters();
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Get or create a timer
+	 *
+	 * @param name Metric name, e.g. {@code library_borrow_book}
+	 * @return shared timer for the name
+	 */
+	public static Timer timer(String name) {
+		return getOrRegister(timers, name, Timer::new, "Timer");
+	}
+
+	/**
+	 * Get or create a counter
+	 *
+	 * @param name Metric name, e.g. {@code library_borrow_conflicts}
+	 * @return shared counter for the name
+	 */
+	public static Counter counter(String name) {
+		return getOrRegister(counters, name, Counter::new, "Counter");
+	}
+
+	/** All registered timers, ordered by name */
+	public static Collection<Timer> timers() {
+		return timers.values();
+	}
+
+	/** All registered counters, ordered by name */
+	public static Collection<Counter> counters() {
+		return counters.values();
+	}
+
+	/**
+	 * Get a metric or create it. ConcurrentSkipListMap.computeIfAbsent may run
+	 * its function more than once, so the metric is only registered with JMX
+	 * after it has won the putIfAbsent.
+	 */
+	private static <T> T getOrRegister(Map<String, T> metrics, String name, Function<String, T> factory,
+			String type) {
+		T metric = metrics.get(name);
+		if (metric != null)
+			return metric;
+		T created = factory.apply(name);
+		metric = metrics.putIfAbsent(name, created);
+		return metric != null ? metric : register(created, type, name);
+	}
+
+	/** Register a metric with the platform MBean server when enabled */
+	private static <T> T register(T metric, String type, String name) {
+		if (!ENABLED)
+			return metric;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(metric, new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + name));
+		} catch (JMException e) {
+			System.err.println("Could not register metric " + name + ": " + e.getMessage());
+		}
+		return metric;
+	}
+
+	/** Start the exporters configured through system properties */
+	private static void startExporters() {
+		Integer port = Integer.getInteger("metrics.http.port");
+		if (port != null) {
+			try {
+				PrometheusExporter.startHttpServer(port);
+			} catch (IOException e) {
+				System.err.println("Could not start metrics endpoint: " + e.getMessage());
+			}
+		}
+
+		String file = System.getProperty("metrics.file");
+		if (file != null)
+			PrometheusExporter.startFileWriter(Path.of(file));
+	}
+}
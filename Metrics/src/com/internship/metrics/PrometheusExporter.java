@@ -0,0 +1,110 @@
+package com.internship.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Writes all metrics in the Prometheus text exposition format. Timers are
+ * exported as summaries in seconds, counters as {@code _total} counters.
+ */
+public final class PrometheusExporter {
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	/** How often the metrics file is rewritten */
+	private static final long FILE_INTERVAL_SECONDS = 10;
+
+	private PrometheusExporter() {
+	}
+
+	/** Render all registered metrics */
+	public static String scrape() {
+		StringBuilder out = new StringBuilder();
+		for (Timer timer : Metrics.timers()) {
+			String name = timer.getName() + "_seconds";
+			LatencyHistogram histogram = timer.getHistogram();
+			out.append("# TYPE ").append(name).append(" summary\n");
+			for (double quantile : QUANTILES) {
+				out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+						.append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+			}
+			out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+			out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+		}
+		for (Counter counter : Metrics.counters()) {
+			String name = counter.getName() + "_total";
+			out.append("# TYPE ").append(name).append(" counter\n");
+			out.append(name).append(' ').append(counter.getCount()).append('\n');
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Serve {@code /metrics} on the loopback interface
+	 *
+	 * @param port TCP port to listen on
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void startHttpServer(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", exchange -> {
+			byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		});
+		server.setExecutor(Executors.newSingleThreadExecutor(daemon("metrics-http")));
+		server.start();
+	}
+
+	/**
+	 * Rewrite a metrics file periodically and once more on exit
+	 *
+	 * @param file Target file; replaced atomically on every write
+	 */
+	public static void startFileWriter(Path file) {
+		ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(daemon("metrics-file"));
+		writer.scheduleAtFixedRate(() -> writeFile(file), FILE_INTERVAL_SECONDS, FILE_INTERVAL_SECONDS,
+				TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> writeFile(file)));
+	}
+
+	/** Write the current metrics to a file */
+	public static void writeFile(Path file) {
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			Path tmp = Files.createTempFile(parent, "metrics", ".tmp");
+			Files.writeString(tmp, scrape(), StandardCharsets.UTF_8);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+		}
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,103 @@
+package com.internship.metrics;
+
+/**
+ * Times an operation into a {@link LatencyHistogram} and emits a JFR event.
+ *
+ * <pre>
+ * Timer.Sample sample = TIMER.start();
+ * try {
+ * 	...
+ * } finally {
+ * 	TIMER.stop(sample);
+ * }
+ * </pre>
+ *
+ * When metrics are disabled both calls return immediately without reading the
+ * clock, allocating or touching JFR. When enabled, the JFR event is begun and
+ * ended around the call, so recordings see its real duration and can filter
+ * it by threshold.
+ */
+public class Timer implements TimerMXBean {
+
+	private final String name;
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	Timer(String name) {
+		this.name = name;
+	}
+
+	/** A call being timed, from {@link #start()} to {@link #stop(Sample)} */
+	public static final class Sample {
+
+		/** Shared by every call while metrics are disabled */
+		private static final Sample DISABLED = new Sample(0, null);
+
+		private final long startNanos;
+		private final MethodEvent event;
+
+		private Sample(long startNanos, MethodEvent event) {
+			this.startNanos = startNanos;
+			this.event = event;
+		}
+	}
+
+	/** Start timing; returns the sample to pass to {@link #stop(Sample)} */
+	public Sample start() {
+		if (!Metrics.ENABLED)
+			return Sample.DISABLED;
+		MethodEvent event = new MethodEvent();
+		event.begin();
+		return new Sample(System.nanoTime(), event);
+	}
+
+	/** Stop timing a call started with {@link #start()} */
+	public void stop(Sample sample) {
+		if (sample.event == null)
+			return;
+		histogram.record(System.nanoTime() - sample.startNanos);
+		MethodEvent event = sample.event;
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = name;
+			event.commit();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	@Override
+	public long getCount() {
+		return histogram.getCount();
+	}
+
+	@Override
+	public double getMeanNanos() {
+		return histogram.getMean();
+	}
+
+	@Override
+	public long getP50Nanos() {
+		return histogram.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getP99Nanos() {
+		return histogram.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getP999Nanos() {
+		return histogram.getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public long getMaxNanos() {
+		return histogram.getMax();
+	}
+}
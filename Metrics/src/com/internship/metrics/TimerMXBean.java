@@ -0,0 +1,19 @@
+package com.internship.metrics;
+
+/**
+ * JMX view of a {@link Timer}. All durations are in nanoseconds.
+ */
+public interface TimerMXBean {
+
+	long getCount();
+
+	double getMeanNanos();
+
+	long getP50Nanos();
+
+	long getP99Nanos();
+
+	long getP999Nanos();
+
+	long getMaxNanos();
+}
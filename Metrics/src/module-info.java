@@ -0,0 +1,11 @@
+/**
+ * Shared instrumentation: timers, latency histograms, counters, JFR events and
+ * JMX/Prometheus export.
+ */
+module Metrics {
+	requires java.management;
+	requires jdk.jfr;
+	requires jdk.httpserver;
+
+	exports com.internship.metrics;
+}
@@ -0,0 +1,78 @@
+#!/bin/sh
+#
+# Packages the Library Management System for kiosks and measures startup.
+#
+#   1. Compiles the LibraryManagementSystem, Metrics and EventBus modules.
+#   2. Links them into a trimmed runtime image with jlink (out/runtime).
+#   3. Records an AppCDS archive of the classes loaded up to the first menu
+#      (out/library.jsa).
+#   4. Times start-to-exit with the full JDK, the linked runtime, and the
+#      linked runtime with the AppCDS archive.
+#
+# Usage: MYSQL_JAR=/path/to/mysql-connector-j.jar Packaging/build.sh [snapshot-file]
+#
+# With a snapshot file the app starts in kiosk mode (--snapshot). Run from the
+# directory that holds library-shards.properties, if one is used.
+
+set -e
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+OUT="$ROOT/Packaging/out"
+MAIN=LibraryManagementSystem/com.internship.library.LibraryManagement
+MODULES=LibraryManagementSystem,java.naming,java.transaction.xa,jdk.crypto.ec
+EXIT_CHOICE=13
+
+if [ -z "$MYSQL_JAR" ]; then
+	echo "Set MYSQL_JAR to the MySQL Connector/J jar." >&2
+	exit 1
+fi
+
+APP_ARGS=""
+if [ -n "$1" ]; then
+	APP_ARGS="--snapshot $1"
+fi
+
+rm -rf "$OUT"
+mkdir -p "$OUT/classes" "$OUT/mods"
+
+echo "==> Compiling modules"
+javac -d "$OUT/classes" --module-source-path "$ROOT/*/src" \
+	-m LibraryManagementSystem,Metrics,EventBus
+
+for module in Metrics EventBus LibraryManagementSystem; do
+	jar --create --file "$OUT/mods/$module.jar" -C "$OUT/classes/$module" .
+done
+
+echo "==> Linking runtime image"
+jlink --module-path "$OUT/mods" --add-modules "$MODULES" \
+	--strip-debug --no-header-files --no-man-pages --output "$OUT/runtime"
+# Base CDS archive of the runtime's own classes; the AppCDS archive builds on it
+"$OUT/runtime/bin/java" -Xshare:dump > /dev/null
+
+echo "==> Recording AppCDS archive"
+echo "$EXIT_CHOICE" | "$OUT/runtime/bin/java" -XX:ArchiveClassesAtExit="$OUT/library.jsa" \
+	-cp "$MYSQL_JAR" -m "$MAIN" $APP_ARGS > /dev/null
+
+# Time from launch until the app has shown its first menu and exited on the
+# exit choice, averaged over a few runs.
+measure() {
+	label=$1
+	shift
+	runs=5
+	total=0
+	i=0
+	while [ $i -lt $runs ]; do
+		start=$(date +%s%N)
+		echo "$EXIT_CHOICE" | "$@" > /dev/null
+		end=$(date +%s%N)
+		total=$((total + (end - start) / 1000000))
+		i=$((i + 1))
+	done
+	printf '%-28s %6d ms\n' "$label" $((total / runs))
+}
+
+echo "==> Time to first response"
+measure "JDK, module path" java -p "$OUT/mods" -cp "$MYSQL_JAR" -m "$MAIN" $APP_ARGS
+measure "jlink runtime" "$OUT/runtime/bin/java" -cp "$MYSQL_JAR" -m "$MAIN" $APP_ARGS
+measure "jlink runtime + AppCDS" "$OUT/runtime/bin/java" -XX:SharedArchiveFile="$OUT/library.jsa" \
+	-cp "$MYSQL_JAR" -m "$MAIN" $APP_ARGS